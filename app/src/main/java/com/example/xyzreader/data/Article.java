@@ -0,0 +1,80 @@
+package com.example.xyzreader.data;
+
+import android.database.Cursor;
+
+/**
+ * An immutable snapshot of one article as read through {@link ArticleLoader.Query}. Instances are
+ * safe to hand from the loading thread to the UI and to share between fragments.
+ */
+public final class Article {
+    public final long id;
+    public final String title;
+    public final String author;
+    public final String body;
+    /** Hash of {@link #body}, worked out on the loading thread so the UI can key on it cheaply. */
+    public final int bodyHash;
+    public final String thumbUrl;
+    public final String photoUrl;
+    public final float aspectRatio;
+    public final long publishedDate;
+
+    /** Whether the colors below have been picked from the photo yet. */
+    public final boolean hasPalette;
+    /** Vibrant swatch of the photo, or 0 if it has none. Only set if {@link #hasPalette}. */
+    public final int vibrantColor;
+    public final int vibrantTextColor;
+    /** Muted swatch of the photo, or 0 if it has none. Only set if {@link #hasPalette}. */
+    public final int mutedColor;
+    public final int mutedTextColor;
+
+    private Article(Cursor cursor) {
+        id = cursor.getLong(ArticleLoader.Query._ID);
+        title = cursor.getString(ArticleLoader.Query.TITLE);
+        author = cursor.getString(ArticleLoader.Query.AUTHOR);
+        body = cursor.getString(ArticleLoader.Query.BODY);
+        bodyHash = body != null ? body.hashCode() : 0;
+        thumbUrl = cursor.getString(ArticleLoader.Query.THUMB_URL);
+        photoUrl = cursor.getString(ArticleLoader.Query.PHOTO_URL);
+        aspectRatio = cursor.getFloat(ArticleLoader.Query.ASPECT_RATIO);
+        publishedDate = cursor.getLong(ArticleLoader.Query.PUBLISHED_DATE);
+        hasPalette = !cursor.isNull(ArticleLoader.Query.VIBRANT_COLOR);
+        vibrantColor = cursor.getInt(ArticleLoader.Query.VIBRANT_COLOR);
+        vibrantTextColor = cursor.getInt(ArticleLoader.Query.VIBRANT_TEXT_COLOR);
+        mutedColor = cursor.getInt(ArticleLoader.Query.MUTED_COLOR);
+        mutedTextColor = cursor.getInt(ArticleLoader.Query.MUTED_TEXT_COLOR);
+    }
+
+    private Article(Article article, int vibrantColor, int vibrantTextColor, int mutedColor,
+            int mutedTextColor) {
+        id = article.id;
+        title = article.title;
+        author = article.author;
+        body = article.body;
+        bodyHash = article.bodyHash;
+        thumbUrl = article.thumbUrl;
+        photoUrl = article.photoUrl;
+        aspectRatio = article.aspectRatio;
+        publishedDate = article.publishedDate;
+        hasPalette = true;
+        this.vibrantColor = vibrantColor;
+        this.vibrantTextColor = vibrantTextColor;
+        this.mutedColor = mutedColor;
+        this.mutedTextColor = mutedTextColor;
+    }
+
+    /**
+     * Reads the article at the cursor's current position. The cursor must have been queried
+     * with {@link ArticleLoader.Query#PROJECTION}.
+     */
+    public static Article fromCursor(Cursor cursor) {
+        return new Article(cursor);
+    }
+
+    /**
+     * Returns a copy of this article with the colors picked from its photo.
+     */
+    public Article withPalette(int vibrantColor, int vibrantTextColor, int mutedColor,
+            int mutedTextColor) {
+        return new Article(this, vibrantColor, vibrantTextColor, mutedColor, mutedTextColor);
+    }
+}
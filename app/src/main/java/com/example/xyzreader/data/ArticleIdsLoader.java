@@ -0,0 +1,90 @@
+package com.example.xyzreader.data;
+
+import android.content.AsyncTaskLoader;
+import android.content.Context;
+import android.database.Cursor;
+
+/**
+ * Loads just the ids of all articles, in {@link ItemsContract.Items#DEFAULT_SORT} order. This is
+ * all a pager needs to create its pages, and as a primitive array it stays small and cheap to
+ * index however many articles there are.
+ */
+public class ArticleIdsLoader extends AsyncTaskLoader<long[]> {
+    private static final String[] PROJECTION = {
+            ItemsContract.Items._ID,
+    };
+
+    private final ForceLoadContentObserver mObserver = new ForceLoadContentObserver();
+    private boolean mObserverRegistered;
+    private long[] mIds;
+
+    public ArticleIdsLoader(Context context) {
+        super(context);
+    }
+
+    @Override
+    public long[] loadInBackground() {
+        final Cursor cursor = getContext().getContentResolver().query(
+                ItemsContract.Items.buildDirUri(), PROJECTION, null, null,
+                ItemsContract.Items.DEFAULT_SORT);
+        if (cursor == null) {
+            return new long[0];
+        }
+        try {
+            final long[] ids = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getLong(0);
+            }
+            return ids;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public void deliverResult(long[] ids) {
+        if (isReset()) {
+            return;
+        }
+        mIds = ids;
+        if (isStarted()) {
+            super.deliverResult(ids);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        /*
+        The cursor is closed as soon as the ids have been copied out of it, so changes are
+        watched on the content resolver for as long as the loader is alive instead.
+         */
+        if (!mObserverRegistered) {
+            getContext().getContentResolver().registerContentObserver(
+                    ItemsContract.Items.buildDirUri(), true, mObserver);
+            mObserverRegistered = true;
+        }
+        if (mIds != null) {
+            deliverResult(mIds);
+        }
+        if (takeContentChanged() || mIds == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+
+        if (mObserverRegistered) {
+            getContext().getContentResolver().unregisterContentObserver(mObserver);
+            mObserverRegistered = false;
+        }
+        mIds = null;
+    }
+}
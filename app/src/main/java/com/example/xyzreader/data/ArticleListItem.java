@@ -0,0 +1,72 @@
+package com.example.xyzreader.data;
+
+import android.database.Cursor;
+import android.text.Html;
+import android.text.format.DateUtils;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.GregorianCalendar;
+
+/**
+ * An immutable list entry, with everything the list binds already formatted. Entries are built
+ * by {@link ArticleListLoader} on its background thread, so binding a card only assigns fields.
+ */
+public final class ArticleListItem {
+    // Most time functions can only handle 1902 - 2037
+    private static final long START_OF_EPOCH = new GregorianCalendar(2, 1, 1).getTimeInMillis();
+
+    public final long id;
+    public final String title;
+    public final CharSequence subtitle;
+    public final String thumbUrl;
+    public final float aspectRatio;
+
+    /**
+     * Hash of the stored columns the entry was built from and of the date as rendered, for
+     * telling changed rows apart. A relative date such as "3 hours ago" changes with time alone,
+     * and the row has to be rebound when it does.
+     */
+    final int contentHash;
+
+    private ArticleListItem(long id, String title, CharSequence subtitle, String thumbUrl,
+            float aspectRatio, int contentHash) {
+        this.id = id;
+        this.title = title;
+        this.subtitle = subtitle;
+        this.thumbUrl = thumbUrl;
+        this.aspectRatio = aspectRatio;
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * Builds the entry for the cursor's current row, which must have been queried with
+     * {@link ArticleLoader.SummaryQuery#PROJECTION}.
+     *
+     * @param now the time relative dates are formatted against
+     * @param dateFormat used for dates too old to be formatted relatively
+     */
+    static ArticleListItem fromCursor(Cursor cursor, long now, SimpleDateFormat dateFormat) {
+        final long id = cursor.getLong(ArticleLoader.SummaryQuery._ID);
+        final String title = cursor.getString(ArticleLoader.SummaryQuery.TITLE);
+        final long publishedDate = cursor.getLong(ArticleLoader.SummaryQuery.PUBLISHED_DATE);
+        final String author = cursor.getString(ArticleLoader.SummaryQuery.AUTHOR);
+        final String thumbUrl = cursor.getString(ArticleLoader.SummaryQuery.THUMB_URL);
+        final float aspectRatio = cursor.getFloat(ArticleLoader.SummaryQuery.ASPECT_RATIO);
+
+        final String date;
+        if (publishedDate >= START_OF_EPOCH) {
+            date = DateUtils.getRelativeTimeSpanString(publishedDate, now,
+                    DateUtils.HOUR_IN_MILLIS, DateUtils.FORMAT_ABBREV_ALL).toString();
+        } else {
+            date = dateFormat.format(new Date(publishedDate));
+        }
+        final CharSequence subtitle = Html.fromHtml(date + "<br/>" + " by " + author);
+
+        final int contentHash = Arrays.hashCode(new Object[] {
+                title, publishedDate, date, author, thumbUrl, aspectRatio,
+        });
+        return new ArticleListItem(id, title, subtitle, thumbUrl, aspectRatio, contentHash);
+    }
+}
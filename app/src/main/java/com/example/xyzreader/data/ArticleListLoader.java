@@ -0,0 +1,285 @@
+package com.example.xyzreader.data;
+
+import android.content.AsyncTaskLoader;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Loads the article list one keyset page at a time. The first load only reads {@link #PAGE_SIZE}
+ * rows; {@link #loadNextPage()} extends the result by another page, each one starting right after
+ * the last (published date, _id) of the previous one so the provider can seek straight to it
+ * through the published_date index instead of skipping over an OFFSET.
+ * <p>
+ * A new page only reads and formats its own rows and is appended to the entries already loaded,
+ * so the cost of a page does not grow with how far the list has been scrolled. Everything loaded
+ * so far is only read again when the articles change.
+ * <p>
+ * Rows are turned into {@link ArticleListItem}s as they are read, so the cursors are closed
+ * before the result is delivered and nothing is formatted on the main thread.
+ */
+public class ArticleListLoader extends AsyncTaskLoader<ArticleListLoader.Result> {
+    public static final int PAGE_SIZE = 30;
+
+    /**
+     * One load of the list: the entries, and the changes from the previously delivered load that
+     * turn one into the other. For a reload the diff is worked out on the loader's thread, keyed
+     * on _id; a page that was only appended is dispatched as an insertion at the end. Either way
+     * the adapter only has to dispatch it.
+     */
+    public static final class Result {
+        public final List<ArticleListItem> items;
+        private final int mVersion;
+        private final int mBaseVersion;
+        private final DiffUtil.DiffResult mDiff;
+        // Number of entries kept from the base result when a page was appended to it, else -1
+        private final int mAppendedAfter;
+        // Keyset of the last entry, where the next page starts
+        private final long mLastPublishedDate;
+        private final long mLastId;
+        // Whether this load consumed a reload request, to be made again if it is cancelled
+        private final boolean mReload;
+
+        private Result(List<ArticleListItem> items, long lastPublishedDate, long lastId,
+                int version, Result base, boolean appended, boolean reload) {
+            this.items = Collections.unmodifiableList(items);
+            mReload = reload;
+            mLastPublishedDate = lastPublishedDate;
+            mLastId = lastId;
+            mVersion = version;
+            mBaseVersion = base != null ? base.mVersion : -1;
+            if (base != null && appended) {
+                mAppendedAfter = base.items.size();
+                mDiff = null;
+            } else if (base != null) {
+                mAppendedAfter = -1;
+                mDiff = DiffUtil.calculateDiff(new SnapshotDiff(base, this), false);
+            } else {
+                mAppendedAfter = -1;
+                mDiff = null;
+            }
+        }
+
+        public int getCount() {
+            return items.size();
+        }
+
+        /**
+         * Tells the adapter about the changes that turn {@code previous} into this result.
+         * Returns false, having told it nothing, when this result was not worked out from
+         * {@code previous} and the whole list has to be rebound.
+         */
+        public boolean dispatchUpdatesFrom(Result previous, RecyclerView.Adapter<?> adapter) {
+            if (previous == null || previous.mVersion != mBaseVersion) {
+                return false;
+            }
+            if (mAppendedAfter >= 0) {
+                adapter.notifyItemRangeInserted(mAppendedAfter, items.size() - mAppendedAfter);
+                return true;
+            }
+            if (mDiff != null) {
+                mDiff.dispatchUpdatesTo(adapter);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static final class SnapshotDiff extends DiffUtil.Callback {
+        private final Result mOld;
+        private final Result mNew;
+
+        SnapshotDiff(Result oldResult, Result newResult) {
+            mOld = oldResult;
+            mNew = newResult;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOld.items.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNew.items.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOld.items.get(oldItemPosition).id == mNew.items.get(newItemPosition).id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOld.items.get(oldItemPosition).contentHash
+                    == mNew.items.get(newItemPosition).contentHash;
+        }
+    }
+
+    private final ContentObserver mObserver = new ContentObserver(new Handler()) {
+        @Override
+        public boolean deliverSelfNotifications() {
+            return true;
+        }
+
+        @Override
+        public void onChange(boolean selfChange) {
+            mReloadRequested = true;
+            onContentChanged();
+        }
+    };
+    private boolean mObserverRegistered;
+
+    private volatile boolean mHasMorePages = true;
+    private volatile boolean mPagePending;
+    // Set when the articles changed, so the next load reads every loaded entry again
+    private volatile boolean mReloadRequested;
+    // The result the UI is showing; loads are diffed against it or appended to it
+    private volatile Result mResult;
+    private int mNextVersion;
+
+    public ArticleListLoader(Context context) {
+        super(context);
+    }
+
+    /**
+     * Asks for one more page. Calls made while a page is still loading, or after the last page
+     * has been reached, are ignored, so this is safe to call from every bind near the end of the
+     * list.
+     */
+    public void loadNextPage() {
+        if (mPagePending || !mHasMorePages) {
+            return;
+        }
+        mPagePending = true;
+        onContentChanged();
+    }
+
+    public boolean hasMorePages() {
+        return mHasMorePages;
+    }
+
+    @Override
+    public Result loadInBackground() {
+        final Result base = mResult;
+        final boolean reload = mReloadRequested;
+        mReloadRequested = false;
+        // Use default locale format
+        final SimpleDateFormat dateFormat = new SimpleDateFormat();
+        final long now = System.currentTimeMillis();
+
+        final Uri uri;
+        final int limit;
+        final List<ArticleListItem> items;
+        final boolean append;
+        if (base != null && !reload && mPagePending && !base.items.isEmpty()) {
+            // Only the next page is read, and appended to the entries already loaded
+            limit = PAGE_SIZE;
+            uri = ItemsContract.Items.buildPageUri(base.mLastPublishedDate, base.mLastId, limit);
+            items = new ArrayList<>(base.getCount() + limit);
+            items.addAll(base.items);
+            append = true;
+        } else {
+            // The first load, or the articles changed: read as many as were loaded from the top
+            limit = base != null ? Math.max(PAGE_SIZE, base.getCount()) : PAGE_SIZE;
+            uri = ItemsContract.Items.buildPageUri(limit);
+            items = new ArrayList<>(limit);
+            append = false;
+        }
+
+        long lastPublishedDate = append ? base.mLastPublishedDate : 0;
+        long lastId = append ? base.mLastId : 0;
+        boolean hasMorePages = false;
+        final Cursor page = getContext().getContentResolver().query(uri,
+                ArticleLoader.SummaryQuery.PROJECTION, null, null, null);
+        if (page != null) {
+            try {
+                while (page.moveToNext()) {
+                    items.add(ArticleListItem.fromCursor(page, now, dateFormat));
+                }
+                hasMorePages = page.getCount() == limit;
+                if (page.moveToLast()) {
+                    lastPublishedDate = page.getLong(ArticleLoader.SummaryQuery.PUBLISHED_DATE);
+                    lastId = page.getLong(ArticleLoader.SummaryQuery._ID);
+                }
+            } finally {
+                page.close();
+            }
+        }
+        mHasMorePages = hasMorePages;
+
+        // Loads run one at a time, so the version needs no further synchronization
+        return new Result(items, lastPublishedDate, lastId, mNextVersion++, base, append, reload);
+    }
+
+    @Override
+    public void deliverResult(Result result) {
+        if (isReset()) {
+            return;
+        }
+        mResult = result;
+        mPagePending = false;
+
+        if (isStarted()) {
+            super.deliverResult(result);
+        }
+    }
+
+    @Override
+    public void onCanceled(Result result) {
+        /*
+        A reload is cancelled whenever a page is asked for while it runs. The articles still
+        changed, so the load that replaces it has to read everything again too, rather than
+        append a page to the stale result.
+         */
+        if (result != null && result.mReload) {
+            mReloadRequested = true;
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        // The cursors are closed once read, so changes are watched on the content resolver
+        if (!mObserverRegistered) {
+            getContext().getContentResolver().registerContentObserver(
+                    ItemsContract.Items.buildDirUri(), true, mObserver);
+            mObserverRegistered = true;
+        }
+        if (mResult != null) {
+            deliverResult(mResult);
+        }
+        if (takeContentChanged() || mResult == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        if (cancelLoad()) {
+            // Reload on the next start so a page requested before stopping is not lost
+            onContentChanged();
+        }
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+
+        if (mObserverRegistered) {
+            getContext().getContentResolver().unregisterContentObserver(mObserver);
+            mObserverRegistered = false;
+        }
+        mResult = null;
+        mPagePending = false;
+    }
+}
@@ -5,19 +5,48 @@ import android.content.CursorLoader;
 import android.net.Uri;
 
 /**
- * Helper for loading a list of articles or a single article.
+ * Loads the position of an article, and holds the projections articles are read with. Lists
+ * only carry the columns in {@link SummaryQuery}; the article body is only read through
+ * {@link Query}, one article at a time.
  */
 public class ArticleLoader extends CursorLoader {
-    public static ArticleLoader newAllArticlesInstance(Context context) {
-        return new ArticleLoader(context, ItemsContract.Items.buildDirUri());
+    /**
+     * Loads the position of an article in the full list, so a pager can open on it without
+     * walking the list. The cursor has no row if the article doesn't exist.
+     */
+    public static ArticleLoader newPositionInstance(Context context, long itemId) {
+        return new ArticleLoader(context, ItemsContract.Items.buildPositionUri(itemId),
+                PositionQuery.PROJECTION, null);
     }
 
-    public static ArticleLoader newInstanceForItemId(Context context, long itemId) {
-        return new ArticleLoader(context, ItemsContract.Items.buildItemUri(itemId));
+    private ArticleLoader(Context context, Uri uri, String[] projection, String sortOrder) {
+        super(context, uri, projection, null, null, sortOrder);
     }
 
-    private ArticleLoader(Context context, Uri uri) {
-        super(context, uri, Query.PROJECTION, null, null, ItemsContract.Items.DEFAULT_SORT);
+    public interface SummaryQuery {
+        String[] PROJECTION = {
+                ItemsContract.Items._ID,
+                ItemsContract.Items.TITLE,
+                ItemsContract.Items.PUBLISHED_DATE,
+                ItemsContract.Items.AUTHOR,
+                ItemsContract.Items.THUMB_URL,
+                ItemsContract.Items.ASPECT_RATIO,
+        };
+
+        int _ID = 0;
+        int TITLE = 1;
+        int PUBLISHED_DATE = 2;
+        int AUTHOR = 3;
+        int THUMB_URL = 4;
+        int ASPECT_RATIO = 5;
+    }
+
+    public interface PositionQuery {
+        String[] PROJECTION = {
+                ItemsContract.Items.POSITION,
+        };
+
+        int POSITION = 0;
     }
 
     public interface Query {
@@ -30,6 +59,10 @@ public class ArticleLoader extends CursorLoader {
                 ItemsContract.Items.PHOTO_URL,
                 ItemsContract.Items.ASPECT_RATIO,
                 ItemsContract.Items.BODY,
+                ItemsContract.Items.VIBRANT_COLOR,
+                ItemsContract.Items.VIBRANT_TEXT_COLOR,
+                ItemsContract.Items.MUTED_COLOR,
+                ItemsContract.Items.MUTED_TEXT_COLOR,
         };
 
         int _ID = 0;
@@ -40,5 +73,9 @@ public class ArticleLoader extends CursorLoader {
         int PHOTO_URL = 5;
         int ASPECT_RATIO = 6;
         int BODY = 7;
+        int VIBRANT_COLOR = 8;
+        int VIBRANT_TEXT_COLOR = 9;
+        int MUTED_COLOR = 10;
+        int MUTED_TEXT_COLOR = 11;
     }
 }
@@ -0,0 +1,232 @@
+package com.example.xyzreader.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.util.LruCache;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Holds the full articles around the page a pager is showing, so that the pages it creates can
+ * bind without running a query of their own. Articles are read a window at a time with a single
+ * {@code _id IN (...)} query on a background thread, and the window is moved ahead of the user
+ * with {@link #prefetchAround(int)}, so swiping to a neighbouring article is served from memory.
+ * <p>
+ * All methods must be called on the main thread, and listeners are called on the main thread.
+ */
+public class ArticleRepository {
+    /** Number of articles on either side of the current one that are kept loaded. */
+    private static final int WINDOW_RADIUS = 2;
+    private static final int CACHE_SIZE = 4 * WINDOW_RADIUS + 1;
+
+    public interface Listener {
+        void onArticleLoaded(Article article);
+    }
+
+    private final ContentResolver mResolver;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final LruCache<Long, Article> mCache = new LruCache<>(CACHE_SIZE);
+    private final Map<Long, List<Listener>> mListeners = new HashMap<>();
+    private final Set<Long> mLoading = new HashSet<>();
+
+    private long[] mIds;
+    // Bumped whenever the articles are reloaded, so results of older loads are dropped
+    private int mGeneration;
+
+    public ArticleRepository(Context context) {
+        mResolver = context.getApplicationContext().getContentResolver();
+    }
+
+    /**
+     * Sets the article ids that positions refer to, as read by {@link ArticleIdsLoader}. Called
+     * whenever that list is reloaded, which also drops the cached articles since they may have
+     * changed along with it. Articles that still have listeners are read again.
+     */
+    public void setIds(long[] ids) {
+        mIds = ids;
+        mGeneration++;
+        mCache.evictAll();
+        mLoading.clear();
+        load(mListeners.keySet());
+    }
+
+    /**
+     * Returns the article if it is already in memory, or null.
+     */
+    public Article get(long id) {
+        return mCache.get(id);
+    }
+
+    /**
+     * Calls the listener with the article now if it is in memory, otherwise once it has been
+     * read, and again whenever it is read after a reload.
+     */
+    public void register(long id, Listener listener) {
+        List<Listener> listeners = mListeners.get(id);
+        if (listeners == null) {
+            listeners = new ArrayList<>(1);
+            mListeners.put(id, listeners);
+        }
+        listeners.add(listener);
+
+        final Article article = mCache.get(id);
+        if (article != null) {
+            listener.onArticleLoaded(article);
+        } else {
+            load(Arrays.asList(id));
+        }
+    }
+
+    public void unregister(long id, Listener listener) {
+        final List<Listener> listeners = mListeners.get(id);
+        if (listeners != null && listeners.remove(listener) && listeners.isEmpty()) {
+            mListeners.remove(id);
+        }
+    }
+
+    /**
+     * Reads the articles within {@link #WINDOW_RADIUS} of the given position that are not
+     * already in memory.
+     */
+    public void prefetchAround(int position) {
+        if (mIds == null) {
+            return;
+        }
+        final int first = Math.max(0, position - WINDOW_RADIUS);
+        final int last = Math.min(mIds.length - 1, position + WINDOW_RADIUS);
+        final List<Long> ids = new ArrayList<>(Math.max(0, last - first + 1));
+        for (int i = first; i <= last; i++) {
+            ids.add(mIds[i]);
+        }
+        load(ids);
+    }
+
+    /**
+     * Stores the colors picked from an article's photo, so they are read along with the article
+     * from then on. The copy in memory is updated right away; listeners are not called, since
+     * whoever picked the colors is already showing them. Observers of the provider are not
+     * notified either, as no list shows these colors.
+     */
+    public Article savePalette(Article article, int vibrantColor, int vibrantTextColor,
+            int mutedColor, int mutedTextColor) {
+        final Article updated = article.withPalette(vibrantColor, vibrantTextColor, mutedColor,
+                mutedTextColor);
+        if (mCache.get(article.id) == article) {
+            mCache.put(article.id, updated);
+        }
+        if (mExecutor.isShutdown()) {
+            return updated;
+        }
+
+        final ContentValues values = new ContentValues();
+        values.put(ItemsContract.Items.VIBRANT_COLOR, vibrantColor);
+        values.put(ItemsContract.Items.VIBRANT_TEXT_COLOR, vibrantTextColor);
+        values.put(ItemsContract.Items.MUTED_COLOR, mutedColor);
+        values.put(ItemsContract.Items.MUTED_TEXT_COLOR, mutedTextColor);
+        final Uri uri = ItemsContract.Items.buildItemUri(article.id).buildUpon()
+                .appendQueryParameter(ItemsContract.QUERY_PARAMETER_SKIP_NOTIFY, "true")
+                .build();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mResolver.update(uri, values, null, null);
+            }
+        });
+        return updated;
+    }
+
+    /**
+     * Stops the background thread and drops all listeners. The repository cannot be used
+     * afterwards.
+     */
+    public void close() {
+        mExecutor.shutdownNow();
+        mHandler.removeCallbacksAndMessages(null);
+        mListeners.clear();
+        mCache.evictAll();
+        mIds = null;
+    }
+
+    private void load(Iterable<Long> candidates) {
+        final List<Long> ids = new ArrayList<>();
+        for (Long id : candidates) {
+            if (mCache.get(id) == null && mLoading.add(id)) {
+                ids.add(id);
+            }
+        }
+        if (ids.isEmpty() || mExecutor.isShutdown()) {
+            return;
+        }
+
+        final int generation = mGeneration;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<Article> articles = query(ids);
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onLoaded(generation, ids, articles);
+                    }
+                });
+            }
+        });
+    }
+
+    /** Runs on the background thread. */
+    private List<Article> query(List<Long> ids) {
+        final String[] args = new String[ids.size()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = Long.toString(ids.get(i));
+        }
+        final String selection = ItemsContract.Items._ID + " IN ("
+                + TextUtils.join(",", Collections.nCopies(args.length, "?")) + ")";
+
+        final List<Article> articles = new ArrayList<>(args.length);
+        final Cursor cursor = mResolver.query(ItemsContract.Items.buildDirUri(),
+                ArticleLoader.Query.PROJECTION, selection, args, null);
+        if (cursor == null) {
+            return articles;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                articles.add(Article.fromCursor(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        return articles;
+    }
+
+    private void onLoaded(int generation, List<Long> ids, List<Article> articles) {
+        if (generation != mGeneration) {
+            return;
+        }
+        mLoading.removeAll(ids);
+        for (Article article : articles) {
+            mCache.put(article.id, article);
+            final List<Listener> listeners = mListeners.get(article.id);
+            if (listeners != null) {
+                for (Listener listener : new ArrayList<>(listeners)) {
+                    listener.onArticleLoaded(article);
+                }
+            }
+        }
+    }
+}
@@ -2,10 +2,28 @@ package com.example.xyzreader.data;
 
 import android.net.Uri;
 
+import java.util.List;
+
 public class ItemsContract {
 	public static final String CONTENT_AUTHORITY = "com.example.xyzreader";
 	public static final Uri BASE_URI = Uri.parse("content://com.example.xyzreader");
 
+	/** Query parameter for reads: the maximum number of rows to return. */
+	public static final String QUERY_PARAMETER_LIMIT = "limit";
+
+	/**
+	 * Query parameters for keyset pages: only rows that sort after the row with this
+	 * published date and _id under {@link Items#DEFAULT_SORT} are returned.
+	 */
+	public static final String QUERY_PARAMETER_BEFORE_DATE = "before_date";
+	public static final String QUERY_PARAMETER_BEFORE_ID = "before_id";
+
+	/**
+	 * Query parameter for updates: "true" to not notify observers, for values that are only
+	 * derived from what is already stored and that no open list needs to be reloaded for.
+	 */
+	public static final String QUERY_PARAMETER_SKIP_NOTIFY = "skip_notify";
+
 	interface ItemsColumns {
 		/** Type: INTEGER PRIMARY KEY AUTOINCREMENT */
 		String _ID = "_id";
@@ -25,13 +43,45 @@ public class ItemsContract {
 		String ASPECT_RATIO = "aspect_ratio";
 		/** Type: INTEGER NOT NULL DEFAULT 0 */
 		String PUBLISHED_DATE = "published_date";
+		/**
+		 * Type: INTEGER. Colors picked from the photo by Palette: the vibrant and muted swatches
+		 * and the title text colors that go on them, 0 where the photo has no such swatch. NULL
+		 * until they have been worked out, and again after a sync changes the article.
+		 */
+		String VIBRANT_COLOR = "vibrant_color";
+		/** Type: INTEGER */
+		String VIBRANT_TEXT_COLOR = "vibrant_text_color";
+		/** Type: INTEGER */
+		String MUTED_COLOR = "muted_color";
+		/** Type: INTEGER */
+		String MUTED_TEXT_COLOR = "muted_text_color";
+		/**
+		 * Type: INTEGER NOT NULL DEFAULT 0. Hash of the feed entry the row was last written
+		 * from, so a sync can tell changed articles apart without reading their content.
+		 */
+		String FINGERPRINT = "fingerprint";
 	}
 
-	public static class Items implements ItemsColumns {
+	interface SearchColumns {
+		/** Type: TEXT. Excerpt around the match, with matched terms wrapped in &lt;b&gt;. */
+		String SNIPPET = "snippet";
+		/** Type: INTEGER. Relevance of the match, higher is better. */
+		String RANK = "rank";
+	}
+
+	interface PositionColumns {
+		/**
+		 * Type: INTEGER. Zero-based position of the article under {@link Items#DEFAULT_SORT}.
+		 * The position query returns no row if there is no article with that _id.
+		 */
+		String POSITION = "position";
+	}
+
+	public static class Items implements ItemsColumns, SearchColumns, PositionColumns {
 		public static final String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.com.example.xyzreader.items";
 		public static final String CONTENT_ITEM_TYPE = "vnd.android.cursor.item/vnd.com.example.xyzreader.items";
 
-        public static final String DEFAULT_SORT = PUBLISHED_DATE + " DESC";
+        public static final String DEFAULT_SORT = PUBLISHED_DATE + " DESC, " + _ID + " DESC";
 
 		/** Matches: /items/ */
 		public static Uri buildDirUri() {
@@ -43,6 +93,37 @@ public class ItemsContract {
 			return BASE_URI.buildUpon().appendPath("items").appendPath(Long.toString(_id)).build();
 		}
 
+		/** Matches: /items/[_id]/position/ */
+		public static Uri buildPositionUri(long _id) {
+			return buildItemUri(_id).buildUpon().appendPath("position").build();
+		}
+
+		/** Matches: /items/?limit=[pageSize] - the first page of articles */
+		public static Uri buildPageUri(int pageSize) {
+			return buildDirUri().buildUpon()
+					.appendQueryParameter(QUERY_PARAMETER_LIMIT, Integer.toString(pageSize))
+					.build();
+		}
+
+		/** Matches: /items/?limit=[pageSize] - the page following the given article */
+		public static Uri buildPageUri(long beforeDate, long beforeId, int pageSize) {
+			return buildPageUri(pageSize).buildUpon()
+					.appendQueryParameter(QUERY_PARAMETER_BEFORE_DATE, Long.toString(beforeDate))
+					.appendQueryParameter(QUERY_PARAMETER_BEFORE_ID, Long.toString(beforeId))
+					.build();
+		}
+
+		/** Matches: /items/search/[query]/ */
+		public static Uri buildSearchUri(String query) {
+			return BASE_URI.buildUpon().appendPath("items").appendPath("search").appendPath(query).build();
+		}
+
+		/** Read the full-text query from a search URI, empty if the query was blank. */
+		public static String getSearchQuery(Uri searchUri) {
+			final List<String> paths = searchUri.getPathSegments();
+			return paths.size() > 2 ? paths.get(2) : "";
+		}
+
         /** Read item ID item detail URI. */
         public static long getItemId(Uri itemUri) {
             return Long.parseLong(itemUri.getPathSegments().get(1));
@@ -8,10 +8,26 @@ import static com.example.xyzreader.data.ItemsProvider.Tables;
 
 public class ItemsDatabase extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "xyzreader.db";
-    private static final int DATABASE_VERSION = 2;
+    private static final int DATABASE_VERSION = 6;
+
+    /** Page cache size of the writing connection, in KiB. */
+    private static final int CACHE_SIZE_KIB = 4096;
 
     public ItemsDatabase(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        /*
+        With write-ahead logging, readers get their own pooled connections and keep seeing the
+        last committed snapshot while UpdaterService writes, instead of waiting on its lock.
+         */
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        // In WAL mode NORMAL still keeps the database consistent, without an fsync per commit
+        db.execSQL("PRAGMA synchronous = NORMAL");
+        db.execSQL("PRAGMA cache_size = -" + CACHE_SIZE_KIB);
     }
 
     @Override
@@ -25,12 +41,55 @@ public class ItemsDatabase extends SQLiteOpenHelper {
                 + ItemsContract.ItemsColumns.THUMB_URL + " TEXT NOT NULL,"
                 + ItemsContract.ItemsColumns.PHOTO_URL + " TEXT NOT NULL,"
                 + ItemsContract.ItemsColumns.ASPECT_RATIO + " REAL NOT NULL DEFAULT 1.5,"
-                + ItemsContract.ItemsColumns.PUBLISHED_DATE + " TEXT NOT NULL"
+                + ItemsContract.ItemsColumns.PUBLISHED_DATE + " INTEGER NOT NULL DEFAULT 0,"
+                + ItemsContract.ItemsColumns.VIBRANT_COLOR + " INTEGER,"
+                + ItemsContract.ItemsColumns.VIBRANT_TEXT_COLOR + " INTEGER,"
+                + ItemsContract.ItemsColumns.MUTED_COLOR + " INTEGER,"
+                + ItemsContract.ItemsColumns.MUTED_TEXT_COLOR + " INTEGER,"
+                + ItemsContract.ItemsColumns.FINGERPRINT + " INTEGER NOT NULL DEFAULT 0"
                 + ")" );
+
+        // Backs DEFAULT_SORT, so listing articles newest first never needs a sort step
+        db.execSQL("CREATE INDEX " + Tables.ITEMS + "_" + ItemsContract.ItemsColumns.PUBLISHED_DATE
+                + " ON " + Tables.ITEMS + " (" + ItemsContract.ItemsColumns.PUBLISHED_DATE + ")");
+
+        createSearchIndex(db);
+    }
+
+    /**
+     * Creates the full-text index behind /items/search/. It is an external content table that
+     * only stores the index, not a second copy of the text, and triggers keep it in step with
+     * every write to the items table.
+     */
+    private static void createSearchIndex(SQLiteDatabase db) {
+        final String searchColumns = ItemsContract.ItemsColumns.TITLE + ","
+                + ItemsContract.ItemsColumns.AUTHOR + ","
+                + ItemsContract.ItemsColumns.BODY;
+        final String newValues = "new." + ItemsContract.ItemsColumns._ID + ","
+                + "new." + ItemsContract.ItemsColumns.TITLE + ","
+                + "new." + ItemsContract.ItemsColumns.AUTHOR + ","
+                + "new." + ItemsContract.ItemsColumns.BODY;
+        final String deleteOld = "DELETE FROM " + Tables.ITEMS_SEARCH
+                + " WHERE docid=old." + ItemsContract.ItemsColumns._ID + ";";
+        final String insertNew = "INSERT INTO " + Tables.ITEMS_SEARCH
+                + "(docid," + searchColumns + ") VALUES (" + newValues + ");";
+
+        db.execSQL("CREATE VIRTUAL TABLE " + Tables.ITEMS_SEARCH + " USING fts4("
+                + "content=\"" + Tables.ITEMS + "\"," + searchColumns + ")");
+
+        db.execSQL("CREATE TRIGGER " + Tables.ITEMS_SEARCH + "_bu BEFORE UPDATE OF "
+                + searchColumns + " ON " + Tables.ITEMS + " BEGIN " + deleteOld + " END");
+        db.execSQL("CREATE TRIGGER " + Tables.ITEMS_SEARCH + "_bd BEFORE DELETE ON "
+                + Tables.ITEMS + " BEGIN " + deleteOld + " END");
+        db.execSQL("CREATE TRIGGER " + Tables.ITEMS_SEARCH + "_au AFTER UPDATE OF "
+                + searchColumns + " ON " + Tables.ITEMS + " BEGIN " + insertNew + " END");
+        db.execSQL("CREATE TRIGGER " + Tables.ITEMS_SEARCH + "_ai AFTER INSERT ON "
+                + Tables.ITEMS + " BEGIN " + insertNew + " END");
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS " + Tables.ITEMS_SEARCH);
         db.execSQL("DROP TABLE IF EXISTS " + Tables.ITEMS);
         onCreate(db);
     }
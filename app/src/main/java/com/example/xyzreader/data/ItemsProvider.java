@@ -10,20 +10,105 @@ import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.text.TextUtils;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 public class ItemsProvider extends ContentProvider {
 	private SQLiteOpenHelper mOpenHelper;
 
+	/**
+	 * URIs changed by the batch currently running on this thread, or null when no batch is
+	 * running. Notifications for these are held back until the batch has committed.
+	 */
+	private final ThreadLocal<Set<Uri>> mPendingNotifications = new ThreadLocal<Set<Uri>>();
+
+	/**
+	 * The compiled {@link InsertQuery} of the batch currently running on this thread, or null
+	 * when no batch is running. Inserts made by the batch reuse it instead of compiling their own.
+	 */
+	private final ThreadLocal<SQLiteStatement> mBatchInsert = new ThreadLocal<SQLiteStatement>();
+
 	interface Tables {
 		String ITEMS = "items";
+		/** Full-text index over the searchable columns of {@link #ITEMS}, keyed by _id. */
+		String ITEMS_SEARCH = "items_search";
+
+		String ITEMS_SEARCH_JOIN_ITEMS = ITEMS_SEARCH + " JOIN " + ITEMS + " ON "
+				+ ITEMS + "." + ItemsContract.Items._ID + "=" + ITEMS_SEARCH + ".docid";
+	}
+
+	/**
+	 * Expressions used to answer {@link ItemsContract.Items#buildSearchUri(String)}.
+	 */
+	private interface SearchQuery {
+		/** Excerpt around the best match in any column, with the matched terms in bold. */
+		String SNIPPET = "snippet(" + Tables.ITEMS_SEARCH + ",'<b>','</b>','\u2026',-1,24)";
+
+		/**
+		 * Number of matched terms in the article. offsets() returns four space separated
+		 * integers per match, so the match count follows from the number of spaces.
+		 */
+		String RANK = "((length(offsets(" + Tables.ITEMS_SEARCH + ")) - length(replace(offsets("
+				+ Tables.ITEMS_SEARCH + "),' ','')) + 1) / 4)";
+
+		String DEFAULT_SORT = RANK + " DESC, " + ItemsContract.Items.DEFAULT_SORT;
+	}
+
+	/**
+	 * Expressions used to answer {@link ItemsContract.Items#buildPositionUri(long)}.
+	 */
+	private interface PositionQuery {
+		String PRECEDING = "preceding";
+
+		/**
+		 * Counts the rows that sort before the outer query's article under
+		 * {@link ItemsContract.Items#DEFAULT_SORT}. The leading published_date >= term lets the
+		 * count run as a range scan of the published_date index.
+		 */
+		String POSITION = "(SELECT COUNT(*) FROM " + Tables.ITEMS + " AS " + PRECEDING
+				+ " WHERE " + PRECEDING + "." + ItemsContract.Items.PUBLISHED_DATE + ">="
+				+ Tables.ITEMS + "." + ItemsContract.Items.PUBLISHED_DATE + " AND ("
+				+ PRECEDING + "." + ItemsContract.Items.PUBLISHED_DATE + ">"
+				+ Tables.ITEMS + "." + ItemsContract.Items.PUBLISHED_DATE + " OR "
+				+ PRECEDING + "." + ItemsContract.Items._ID + ">"
+				+ Tables.ITEMS + "." + ItemsContract.Items._ID + "))";
+
+		/** The article itself, so that there is no row at all if it doesn't exist. */
+		String SELECTION = Tables.ITEMS + "." + ItemsContract.Items._ID + "=?";
+	}
+
+	/**
+	 * The statement inserts within {@link #applyBatch(ArrayList)} go through. Values are bound in
+	 * the order of {@link #COLUMNS}.
+	 */
+	private interface InsertQuery {
+		String[] COLUMNS = {
+				ItemsContract.Items.SERVER_ID,
+				ItemsContract.Items.TITLE,
+				ItemsContract.Items.AUTHOR,
+				ItemsContract.Items.BODY,
+				ItemsContract.Items.THUMB_URL,
+				ItemsContract.Items.PHOTO_URL,
+				ItemsContract.Items.ASPECT_RATIO,
+				ItemsContract.Items.PUBLISHED_DATE,
+				ItemsContract.Items.FINGERPRINT,
+		};
+
+		String SQL = "INSERT INTO " + Tables.ITEMS + " ("
+				+ TextUtils.join(",", COLUMNS)
+				+ ") VALUES (?,?,?,?,?,?,?,?,?)";
 	}
 
 	private static final int ITEMS = 0;
 	private static final int ITEMS__ID = 1;
+	private static final int ITEMS_SEARCH = 2;
+	private static final int ITEMS__ID_POSITION = 3;
 
 	private static final UriMatcher sUriMatcher = buildUriMatcher();
 
@@ -32,6 +117,10 @@ public class ItemsProvider extends ContentProvider {
 		final String authority = ItemsContract.CONTENT_AUTHORITY;
 		matcher.addURI(authority, "items", ITEMS);
 		matcher.addURI(authority, "items/#", ITEMS__ID);
+		// A blank query leaves an empty last segment, which "*" does not match
+		matcher.addURI(authority, "items/search", ITEMS_SEARCH);
+		matcher.addURI(authority, "items/search/*", ITEMS_SEARCH);
+		matcher.addURI(authority, "items/#/position", ITEMS__ID_POSITION);
 		return matcher;
 	}
 
@@ -46,8 +135,10 @@ public class ItemsProvider extends ContentProvider {
 		final int match = sUriMatcher.match(uri);
 		switch (match) {
 			case ITEMS:
+			case ITEMS_SEARCH:
 				return ItemsContract.Items.CONTENT_TYPE;
 			case ITEMS__ID:
+			case ITEMS__ID_POSITION:
 				return ItemsContract.Items.CONTENT_ITEM_TYPE;
 			default:
 				throw new UnsupportedOperationException("Unknown uri: " + uri);
@@ -57,8 +148,18 @@ public class ItemsProvider extends ContentProvider {
 	@Override
 	public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
 		final SQLiteDatabase db = mOpenHelper.getReadableDatabase();
-		final SelectionBuilder builder = buildSelection(uri);
-		Cursor cursor = builder.where(selection, selectionArgs).query(db, projection, sortOrder);
+		final int match = sUriMatcher.match(uri);
+		final SelectionBuilder builder = buildExpandedSelection(uri, match);
+		if (match == ITEMS_SEARCH && TextUtils.isEmpty(sortOrder)) {
+			sortOrder = SearchQuery.DEFAULT_SORT;
+		}
+		final Long limit = getLongParameter(uri, ItemsContract.QUERY_PARAMETER_LIMIT);
+		if (limit != null && TextUtils.isEmpty(sortOrder)) {
+			// Pages only line up with each other in the order their keys were taken from
+			sortOrder = ItemsContract.Items.DEFAULT_SORT;
+		}
+		Cursor cursor = builder.where(selection, selectionArgs).query(db, projection, null, null,
+				sortOrder, limit != null ? Long.toString(limit) : null);
         if (cursor != null) {
             cursor.setNotificationUri(getContext().getContentResolver(), uri);
         }
@@ -71,8 +172,15 @@ public class ItemsProvider extends ContentProvider {
 		final int match = sUriMatcher.match(uri);
 		switch (match) {
 			case ITEMS: {
-				final long _id = db.insertOrThrow(Tables.ITEMS, null, values);
-                getContext().getContentResolver().notifyChange(uri, null);
+				/*
+				Rows that don't provide every column of InsertQuery go through a regular insert
+				so column defaults still apply.
+				 */
+				final SQLiteStatement batchInsert = mBatchInsert.get();
+				final long _id = batchInsert != null && hasAllColumns(values, InsertQuery.COLUMNS)
+						? executeInsert(batchInsert, values)
+						: db.insertOrThrow(Tables.ITEMS, null, values);
+				notifyChange(uri);
 				return ItemsContract.Items.buildItemUri(_id);
 			}
 			default: {
@@ -81,20 +189,202 @@ public class ItemsProvider extends ContentProvider {
 		}
 	}
 
+	private static long executeInsert(SQLiteStatement insert, ContentValues values) {
+		insert.clearBindings();
+		for (int i = 0; i < InsertQuery.COLUMNS.length; i++) {
+			bindValue(insert, i + 1, values.get(InsertQuery.COLUMNS[i]));
+		}
+		return insert.executeInsert();
+	}
+
+	private static Long getLongParameter(Uri uri, String name) {
+		final String value = uri.getQueryParameter(name);
+		if (value == null) {
+			return null;
+		}
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid " + name + ": " + uri);
+		}
+	}
+
+	private static boolean hasAllColumns(ContentValues values, String[] columns) {
+		for (String column : columns) {
+			if (!values.containsKey(column)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void bindValue(SQLiteStatement statement, int index, Object value) {
+		if (value == null) {
+			statement.bindNull(index);
+		} else if (value instanceof String) {
+			statement.bindString(index, (String) value);
+		} else if (value instanceof Float || value instanceof Double) {
+			statement.bindDouble(index, ((Number) value).doubleValue());
+		} else if (value instanceof Number) {
+			statement.bindLong(index, ((Number) value).longValue());
+		} else if (value instanceof Boolean) {
+			statement.bindLong(index, (Boolean) value ? 1 : 0);
+		} else if (value instanceof byte[]) {
+			statement.bindBlob(index, (byte[]) value);
+		} else {
+			statement.bindString(index, value.toString());
+		}
+	}
+
 	@Override
 	public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
 		final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
 		final SelectionBuilder builder = buildSelection(uri);
-        getContext().getContentResolver().notifyChange(uri, null);
-		return builder.where(selection, selectionArgs).update(db, values);
+		final int count = builder.where(selection, selectionArgs).update(db, values);
+		if (count > 0 && !uri.getBooleanQueryParameter(
+				ItemsContract.QUERY_PARAMETER_SKIP_NOTIFY, false)) {
+			notifyChange(uri);
+		}
+		return count;
 	}
 
 	@Override
 	public int delete(Uri uri, String selection, String[] selectionArgs) {
 		final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
 		final SelectionBuilder builder = buildSelection(uri);
-        getContext().getContentResolver().notifyChange(uri, null);
-		return builder.where(selection, selectionArgs).delete(db);
+		final int count = builder.where(selection, selectionArgs).delete(db);
+		if (count > 0) {
+			notifyChange(uri);
+		}
+		return count;
+	}
+
+	/**
+	 * Notifies observers of {@code uri}, or queues the notification if a batch is being applied
+	 * on this thread.
+	 */
+	private void notifyChange(Uri uri) {
+		final Set<Uri> pending = mPendingNotifications.get();
+		if (pending != null) {
+			pending.add(uri);
+		} else {
+			getContext().getContentResolver().notifyChange(uri, null);
+		}
+	}
+
+	/**
+	 * Sends one notification per changed URI. A URI is skipped if one of its ancestors is also
+	 * being notified, since observers of descendants are notified along with the ancestor.
+	 */
+	private void notifyChanges(Set<Uri> uris) {
+		for (Uri uri : uris) {
+			boolean covered = false;
+			for (Uri other : uris) {
+				if (other != uri && isAncestor(other, uri)) {
+					covered = true;
+					break;
+				}
+			}
+			if (!covered) {
+				getContext().getContentResolver().notifyChange(uri, null);
+			}
+		}
+	}
+
+	private static boolean isAncestor(Uri ancestor, Uri uri) {
+		final List<String> ancestorPaths = ancestor.getPathSegments();
+		final List<String> paths = uri.getPathSegments();
+		return ancestor.getAuthority().equals(uri.getAuthority())
+				&& ancestorPaths.size() < paths.size()
+				&& ancestorPaths.equals(paths.subList(0, ancestorPaths.size()));
+	}
+
+	/**
+	 * Builds a selection for reading, which unlike {@link #buildSelection(Uri)} may span more
+	 * than one table.
+	 */
+	private SelectionBuilder buildExpandedSelection(Uri uri, int match) {
+		final SelectionBuilder builder = new SelectionBuilder();
+		switch (match) {
+			case ITEMS: {
+				builder.table(Tables.ITEMS);
+				final Long beforeDate = getLongParameter(uri, ItemsContract.QUERY_PARAMETER_BEFORE_DATE);
+				final Long beforeId = getLongParameter(uri, ItemsContract.QUERY_PARAMETER_BEFORE_ID);
+				if (beforeDate != null && beforeId != null) {
+					/*
+					Keyset condition (published_date, _id) < (beforeDate, beforeId). The leading
+					published_date <= ? term bounds the scan of the published_date index, whose
+					entries are ordered by _id within the same date.
+					 */
+					final String date = Long.toString(beforeDate);
+					builder.where(ItemsContract.Items.PUBLISHED_DATE + "<=? AND ("
+									+ ItemsContract.Items.PUBLISHED_DATE + "<? OR "
+									+ ItemsContract.Items._ID + "<?)",
+							date, date, Long.toString(beforeId));
+				}
+				return builder;
+			}
+			case ITEMS_SEARCH: {
+				final String matchQuery = toMatchQuery(ItemsContract.Items.getSearchQuery(uri));
+				builder.table(Tables.ITEMS_SEARCH_JOIN_ITEMS)
+						.mapToTable(ItemsContract.Items._ID, Tables.ITEMS)
+						.mapToTable(ItemsContract.Items.SERVER_ID, Tables.ITEMS)
+						.mapToTable(ItemsContract.Items.TITLE, Tables.ITEMS)
+						.mapToTable(ItemsContract.Items.AUTHOR, Tables.ITEMS)
+						.mapToTable(ItemsContract.Items.BODY, Tables.ITEMS)
+						.mapToTable(ItemsContract.Items.THUMB_URL, Tables.ITEMS)
+						.mapToTable(ItemsContract.Items.PHOTO_URL, Tables.ITEMS)
+						.mapToTable(ItemsContract.Items.ASPECT_RATIO, Tables.ITEMS)
+						.mapToTable(ItemsContract.Items.PUBLISHED_DATE, Tables.ITEMS)
+						.map(ItemsContract.Items.SNIPPET, SearchQuery.SNIPPET)
+						.map(ItemsContract.Items.RANK, SearchQuery.RANK);
+				if (matchQuery == null) {
+					// Nothing to search for, so nothing matches
+					return builder.where("0");
+				}
+				return builder.where(Tables.ITEMS_SEARCH + " MATCH ?", matchQuery);
+			}
+			case ITEMS__ID_POSITION: {
+				final String _id = uri.getPathSegments().get(1);
+				return builder.table(Tables.ITEMS)
+						.map(ItemsContract.Items.POSITION, PositionQuery.POSITION)
+						.where(PositionQuery.SELECTION, _id);
+			}
+			default: {
+				return buildSelection(uri, match, builder);
+			}
+		}
+	}
+
+	/**
+	 * Turns what the user typed into an FTS query that can't be malformed. Every whitespace
+	 * separated term becomes a quoted prefix phrase, so operators, stray quotes and dashes are
+	 * searched for as text rather than parsed. Quotes and asterisks are dropped from the terms,
+	 * as the tokenizer would split on them anyway. Returns null if no term has anything to
+	 * search for.
+	 */
+	private static String toMatchQuery(String query) {
+		final StringBuilder matchQuery = new StringBuilder();
+		for (String term : query.trim().split("\\s+")) {
+			term = term.replace('"', ' ').replace('*', ' ').trim();
+			if (!hasSearchableCharacter(term)) {
+				continue;
+			}
+			if (matchQuery.length() > 0) {
+				matchQuery.append(' ');
+			}
+			matchQuery.append('"').append(term).append("*\"");
+		}
+		return matchQuery.length() > 0 ? matchQuery.toString() : null;
+	}
+
+	private static boolean hasSearchableCharacter(String term) {
+		for (int i = 0; i < term.length(); i++) {
+			if (Character.isLetterOrDigit(term.charAt(i))) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	private SelectionBuilder buildSelection(Uri uri) {
@@ -122,22 +412,56 @@ public class ItemsProvider extends ContentProvider {
     /**
      * Apply the given set of {@link ContentProviderOperation}, executing inside
      * a {@link SQLiteDatabase} transaction. All changes will be rolled back if
-     * any single one fails.
+     * any single one fails. Change notifications are coalesced and only sent
+     * once the transaction has committed.
+     * <p>
+     * Operations built with {@link ContentProviderOperation.Builder#withYieldAllowed(boolean)}
+     * mark the start of a new chunk. Between chunks the transaction yields to any waiting
+     * readers, committing the work done so far; in that case only the current chunk is rolled
+     * back on failure.
+     * <p>
+     * Inserts into /items/ share one precompiled {@code INSERT} statement for the whole batch,
+     * so a sync's new articles and its updates are written in the same transaction without
+     * compiling a statement per row.
      */
     public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
             throws OperationApplicationException {
         final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-        db.beginTransaction();
+        final Set<Uri> changedUris = new LinkedHashSet<Uri>();
+        final ContentProviderResult[] results;
+        mPendingNotifications.set(changedUris);
+        final SQLiteStatement insert = db.compileStatement(InsertQuery.SQL);
+        mBatchInsert.set(insert);
+        db.beginTransactionNonExclusive();
         try {
             final int numOperations = operations.size();
-            final ContentProviderResult[] results = new ContentProviderResult[numOperations];
+            results = new ContentProviderResult[numOperations];
             for (int i = 0; i < numOperations; i++) {
-                results[i] = operations.get(i).apply(this, results, i);
+                final ContentProviderOperation operation = operations.get(i);
+                if (i > 0 && operation.isYieldAllowed()) {
+                    yieldChunk(db, changedUris);
+                }
+                results[i] = operation.apply(this, results, i);
             }
             db.setTransactionSuccessful();
-            return results;
         } finally {
             db.endTransaction();
+            mBatchInsert.remove();
+            insert.close();
+            mPendingNotifications.remove();
+        }
+        notifyChanges(changedUris);
+        return results;
+    }
+
+    /**
+     * Lets waiting readers in between two chunks of a batch. If the transaction was committed,
+     * observers are told about the rows changed so far so they can show partial progress.
+     */
+    private void yieldChunk(SQLiteDatabase db, Set<Uri> changedUris) {
+        if (db.yieldIfContendedSafely()) {
+            notifyChanges(changedUris);
+            changedUris.clear();
         }
     }
 }
@@ -157,14 +157,20 @@ public class SelectionBuilder {
     	}
     }
 
-    private void mapColumns(String[] columns) {
-    	if (mProjectionMap == null) return;
-        for (int i = 0; i < columns.length; i++) {
-            final String target = mProjectionMap.get(columns[i]);
+    /**
+     * Returns a copy of {@code columns} with mapped columns replaced by their clauses. The
+     * caller's array is often a shared PROJECTION constant, so it is never written to.
+     */
+    private String[] mapColumns(String[] columns) {
+    	if (mProjectionMap == null) return columns;
+        final String[] mapped = columns.clone();
+        for (int i = 0; i < mapped.length; i++) {
+            final String target = mProjectionMap.get(mapped[i]);
             if (target != null) {
-                columns[i] = target;
+                mapped[i] = target;
             }
         }
+        return mapped;
     }
 
     @Override
@@ -186,7 +192,7 @@ public class SelectionBuilder {
     public Cursor query(SQLiteDatabase db, String[] columns, String groupBy,
             String having, String orderBy, String limit) {
         assertTable();
-        if (columns != null) mapColumns(columns);
+        if (columns != null) columns = mapColumns(columns);
         return db.query(mTable, columns, getSelection(), getSelectionArgs(), groupBy, having,
                 orderBy, limit);
     }
@@ -5,6 +5,7 @@ import android.content.ContentProviderOperation;
 import android.content.ContentValues;
 import android.content.Intent;
 import android.content.OperationApplicationException;
+import android.database.Cursor;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.net.Uri;
@@ -13,13 +14,16 @@ import android.support.design.widget.Snackbar;
 import android.text.format.Time;
 import android.util.Log;
 
+import com.example.xyzreader.remote.ArticleStreamReader;
+import com.example.xyzreader.remote.RemoteArticle;
 import com.example.xyzreader.remote.RemoteEndpointUtil;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 
 public class UpdaterService extends IntentService {
     private static final String TAG = "UpdaterService";
@@ -28,6 +32,19 @@ public class UpdaterService extends IntentService {
             = "com.example.xyzreader.intent.action.STATE_CHANGE";
     public static final String EXTRA_REFRESHING
             = "com.example.xyzreader.intent.extra.REFRESHING";
+    public static final String EXTRA_BATCH_SIZE
+            = "com.example.xyzreader.intent.extra.BATCH_SIZE";
+
+    /**
+     * Number of rows written per chunk during a sync. Each chunk of inserts and updates is its
+     * own batch, and the deletes yield between chunks through
+     * {@link ContentProviderOperation.Builder#withYieldAllowed(boolean)}, so list and detail
+     * queries never wait behind the whole refresh.
+     */
+    private static final int DEFAULT_BATCH_SIZE = 100;
+
+    // Dates are parsed once here and stored as epoch millis, so the UI never parses them
+    private final SimpleDateFormat mDateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.sss");
 
     public UpdaterService() {
         super(TAG);
@@ -47,42 +64,214 @@ public class UpdaterService extends IntentService {
         sendStickyBroadcast(
                 new Intent(BROADCAST_ACTION_STATE_CHANGE).putExtra(EXTRA_REFRESHING, true));
 
-        // Don't even inspect the intent, we only do one thing, and that's fetch content.
+        // We only do one thing, and that's fetch content. The intent can only tune the chunk size.
+        int batchSize = Math.max(1, intent.getIntExtra(EXTRA_BATCH_SIZE, DEFAULT_BATCH_SIZE));
+
+        // An empty table always gets a full download, whatever the HTTP cache has stored.
+        try (ArticleStreamReader reader =
+                     RemoteEndpointUtil.openArticleStream(this, !hasLocalItems())) {
+            if (reader == null) {
+                Log.i(TAG, "Feed not modified, nothing to update.");
+            } else {
+                syncArticles(reader, batchSize);
+            }
+        } catch (IOException | IllegalStateException | RemoteException
+                | OperationApplicationException e) {
+            Log.e(TAG, "Error updating content.", e);
+            // The HTTP cache must not vouch for a feed that never made it into the database
+            RemoteEndpointUtil.evictCache(this);
+        }
+
+        sendStickyBroadcast(
+                new Intent(BROADCAST_ACTION_STATE_CHANGE).putExtra(EXTRA_REFRESHING, false));
+    }
+
+    /**
+     * Applies the articles read from {@code reader} to the database. New and changed articles
+     * are written out every {@code batchSize} rows while the feed is still being read, so only
+     * one chunk of them is held in memory at a time. Deletes have to wait until the whole feed
+     * has been seen, and yield to readers after every {@code batchSize} rows.
+     * <p>
+     * Inserts and updates go through the same batch, so each chunk is one provider transaction.
+     * The sync as a whole is not: chunks committed before a failure stay, and the next sync's
+     * diff picks up from them.
+     */
+    private void syncArticles(ArticleStreamReader reader, int batchSize)
+            throws IOException, RemoteException, OperationApplicationException {
         ArrayList<ContentProviderOperation> cpo = new ArrayList<ContentProviderOperation>();
 
         Uri dirUri = ItemsContract.Items.buildDirUri();
 
-        // Delete all items
-        cpo.add(ContentProviderOperation.newDelete(dirUri).build());
+        /*
+        Rather than deleting and re-inserting every article, the feed is diffed against what we
+        already have, keyed on SERVER_ID. Only new, changed and removed articles produce an
+        operation, so an unchanged feed leaves the table (and every open cursor) untouched.
+         */
+        Map<String, LocalItem> localItems = queryLocalItems();
 
-        try {
-            JSONArray array = RemoteEndpointUtil.fetchJsonArray();
-            if (array == null) {
-                throw new JSONException("Invalid parsed item array" );
+        // Articles are read off the response stream one at a time, never as a whole payload.
+        while (reader.hasNext()) {
+            RemoteArticle article = reader.next();
+            // Hashed as the feed sent it, so a date that fails to parse still hashes the same
+            long fingerprint = fingerprint(article.title, article.author, article.body,
+                    article.thumb, article.photo, article.aspectRatio, article.publishedDate);
+
+            LocalItem localItem = localItems.get(article.id);
+            if (localItem != null && localItem.seen) {
+                // Duplicate entry in the feed, the first one wins
+                continue;
+            }
+            if (localItem != null && localItem.fingerprint == fingerprint) {
+                localItem.seen = true;
+                continue;
             }
 
-            for (int i = 0; i < array.length(); i++) {
-                ContentValues values = new ContentValues();
-                JSONObject object = array.getJSONObject(i);
-
-                values.put(ItemsContract.Items.SERVER_ID, object.getString("id" ));
-                values.put(ItemsContract.Items.AUTHOR, object.getString("author" ));
-                values.put(ItemsContract.Items.TITLE, object.getString("title" ));
-                values.put(ItemsContract.Items.BODY, object.getString("body"));
-                values.put(ItemsContract.Items.THUMB_URL, object.getString("thumb" ));
-                values.put(ItemsContract.Items.PHOTO_URL, object.getString("photo" ));
-                values.put(ItemsContract.Items.ASPECT_RATIO, object.getString("aspect_ratio" ));
-                values.put(ItemsContract.Items.PUBLISHED_DATE, object.getString("published_date"));
+            ContentValues values = new ContentValues();
+            values.put(ItemsContract.Items.SERVER_ID, article.id);
+            values.put(ItemsContract.Items.AUTHOR, article.author);
+            values.put(ItemsContract.Items.TITLE, article.title);
+            values.put(ItemsContract.Items.BODY, article.body);
+            values.put(ItemsContract.Items.THUMB_URL, article.thumb);
+            values.put(ItemsContract.Items.PHOTO_URL, article.photo);
+            values.put(ItemsContract.Items.ASPECT_RATIO, article.aspectRatio);
+            values.put(ItemsContract.Items.PUBLISHED_DATE,
+                    parsePublishedDate(article.publishedDate));
+            values.put(ItemsContract.Items.FINGERPRINT, fingerprint);
+
+            if (localItem == null) {
                 cpo.add(ContentProviderOperation.newInsert(dirUri).withValues(values).build());
+                localItem = new LocalItem(0, fingerprint);
+                localItems.put(article.id, localItem);
+            } else {
+                // The photo may have changed, so its colors are picked again when next shown
+                values.putNull(ItemsContract.Items.VIBRANT_COLOR);
+                values.putNull(ItemsContract.Items.VIBRANT_TEXT_COLOR);
+                values.putNull(ItemsContract.Items.MUTED_COLOR);
+                values.putNull(ItemsContract.Items.MUTED_TEXT_COLOR);
+                cpo.add(ContentProviderOperation
+                        .newUpdate(ItemsContract.Items.buildItemUri(localItem.id))
+                        .withValues(values)
+                        .build());
             }
+            localItem.seen = true;
 
+            if (cpo.size() >= batchSize) {
+                getContentResolver().applyBatch(ItemsContract.CONTENT_AUTHORITY, cpo);
+                cpo.clear();
+            }
+        }
+
+        // Anything we didn't see in the feed has been removed upstream
+        for (LocalItem localItem : localItems.values()) {
+            if (!localItem.seen) {
+                cpo.add(ContentProviderOperation
+                        .newDelete(ItemsContract.Items.buildItemUri(localItem.id))
+                        .withYieldAllowed(cpo.size() % batchSize == 0)
+                        .build());
+            }
+        }
+
+        if (!cpo.isEmpty()) {
             getContentResolver().applyBatch(ItemsContract.CONTENT_AUTHORITY, cpo);
+        }
+    }
 
-        } catch (JSONException | RemoteException | OperationApplicationException e) {
-            Log.e(TAG, "Error updating content.", e);
+    /**
+     * Returns true if at least one article is stored locally.
+     */
+    private boolean hasLocalItems() {
+        Cursor cursor = getContentResolver().query(ItemsContract.Items.buildDirUri(),
+                new String[]{ItemsContract.Items._ID}, null, null, null);
+        if (cursor == null) {
+            return false;
         }
 
-        sendStickyBroadcast(
-                new Intent(BROADCAST_ACTION_STATE_CHANGE).putExtra(EXTRA_REFRESHING, false));
+        try {
+            return cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Reads the SERVER_ID, _ID and stored fingerprint of every article. Only these small values
+     * are read and kept in memory, never the article bodies themselves. Rows without a
+     * SERVER_ID can never be matched against the feed, so they are keyed uniquely and end up
+     * being deleted.
+     */
+    private Map<String, LocalItem> queryLocalItems() {
+        Map<String, LocalItem> localItems = new HashMap<String, LocalItem>();
+        Cursor cursor = getContentResolver().query(ItemsContract.Items.buildDirUri(),
+                LocalQuery.PROJECTION, null, null, null);
+        if (cursor == null) {
+            return localItems;
+        }
+
+        try {
+            while (cursor.moveToNext()) {
+                long id = cursor.getLong(LocalQuery._ID);
+                String serverId = cursor.getString(LocalQuery.SERVER_ID);
+                localItems.put(serverId != null ? serverId : "\u0000" + id,
+                        new LocalItem(id, cursor.getLong(LocalQuery.FINGERPRINT)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return localItems;
+    }
+
+    /**
+     * Parses the feed's date into epoch millis, or returns 0 if the date can't be parsed. A fixed
+     * value keeps the row the same from one sync to the next, where the current time would not.
+     */
+    private long parsePublishedDate(String date) {
+        try {
+            return mDateFormat.parse(date).getTime();
+        } catch (ParseException ex) {
+            Log.e(TAG, ex.getMessage());
+            Log.i(TAG, "passing 0 as the date");
+            return 0;
+        }
+    }
+
+    /**
+     * A 64-bit hash over the given column values, used to detect changed articles without
+     * holding their content in memory.
+     */
+    private static long fingerprint(String... values) {
+        long hash = 1125899906842597L;
+        for (String value : values) {
+            if (value != null) {
+                for (int i = 0; i < value.length(); i++) {
+                    hash = 31 * hash + value.charAt(i);
+                }
+            }
+            // Separator, so that ("ab", "c") and ("a", "bc") differ
+            hash = 31 * hash + (value != null ? 1 : 2);
+        }
+        return hash;
+    }
+
+    private static class LocalItem {
+        final long id;
+        final long fingerprint;
+        boolean seen = false;
+
+        LocalItem(long id, long fingerprint) {
+            this.id = id;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    private interface LocalQuery {
+        String[] PROJECTION = {
+                ItemsContract.Items._ID,
+                ItemsContract.Items.SERVER_ID,
+                ItemsContract.Items.FINGERPRINT,
+        };
+
+        int _ID = 0;
+        int SERVER_ID = 1;
+        int FINGERPRINT = 2;
     }
 }
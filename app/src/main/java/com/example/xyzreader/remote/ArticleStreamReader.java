@@ -0,0 +1,98 @@
+package com.example.xyzreader.remote;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.MalformedJsonException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads the article feed one record at a time straight off a character stream. Only the article
+ * currently being read is held in memory, no matter how large the feed is.
+ */
+public class ArticleStreamReader implements Closeable {
+    private final JsonReader mReader;
+    private boolean mInArray = false;
+
+    ArticleStreamReader(Reader in) {
+        mReader = new JsonReader(in);
+    }
+
+    /**
+     * Returns true if there is another article left in the feed.
+     */
+    public boolean hasNext() throws IOException {
+        if (!mInArray) {
+            mReader.beginArray();
+            mInArray = true;
+        }
+        return mReader.hasNext();
+    }
+
+    /**
+     * Reads the next article from the feed. Unknown keys are skipped.
+     */
+    public RemoteArticle next() throws IOException {
+        if (!hasNext()) {
+            throw new MalformedJsonException("No more articles in feed");
+        }
+
+        RemoteArticle article = new RemoteArticle();
+        mReader.beginObject();
+        while (mReader.hasNext()) {
+            String name = mReader.nextName();
+            switch (name) {
+                case "id":
+                    article.id = nextString();
+                    break;
+                case "author":
+                    article.author = nextString();
+                    break;
+                case "title":
+                    article.title = nextString();
+                    break;
+                case "body":
+                    article.body = nextString();
+                    break;
+                case "thumb":
+                    article.thumb = nextString();
+                    break;
+                case "photo":
+                    article.photo = nextString();
+                    break;
+                case "aspect_ratio":
+                    article.aspectRatio = nextString();
+                    break;
+                case "published_date":
+                    article.publishedDate = nextString();
+                    break;
+                default:
+                    mReader.skipValue();
+                    break;
+            }
+        }
+        mReader.endObject();
+
+        if (article.id == null || article.author == null || article.title == null
+                || article.body == null || article.thumb == null || article.photo == null
+                || article.aspectRatio == null || article.publishedDate == null) {
+            throw new MalformedJsonException("Incomplete article " + article.id);
+        }
+        return article;
+    }
+
+    private String nextString() throws IOException {
+        if (mReader.peek() == JsonToken.NULL) {
+            mReader.nextNull();
+            return null;
+        }
+        return mReader.nextString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mReader.close();
+    }
+}
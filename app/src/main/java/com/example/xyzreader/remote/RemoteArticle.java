@@ -0,0 +1,16 @@
+package com.example.xyzreader.remote;
+
+/**
+ * A single article record as it appears in the remote feed. Values are kept as the raw strings
+ * found in the feed; converting them to database columns is left to the caller.
+ */
+public class RemoteArticle {
+    public String id;
+    public String author;
+    public String title;
+    public String body;
+    public String thumb;
+    public String photo;
+    public String aspectRatio;
+    public String publishedDate;
+}
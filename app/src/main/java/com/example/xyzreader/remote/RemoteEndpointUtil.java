@@ -1,14 +1,15 @@
 package com.example.xyzreader.remote;
 
+import android.content.Context;
 import android.util.Log;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONTokener;
-
+import java.io.File;
 import java.io.IOException;
+import java.net.HttpURLConnection;
 import java.net.URL;
 
+import okhttp3.Cache;
+import okhttp3.CacheControl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -16,41 +17,79 @@ import okhttp3.Response;
 public class RemoteEndpointUtil {
     private static final String TAG = "RemoteEndpointUtil";
 
+    private static final String HTTP_CACHE_DIR = "http";
+    private static final long HTTP_CACHE_SIZE = 10 * 1024 * 1024;
+
+    private static OkHttpClient sClient;
+
     private RemoteEndpointUtil() {
     }
 
-    public static JSONArray fetchJsonArray() {
-        String itemsJson = null;
-        try {
-            itemsJson = fetchPlainText(Config.BASE_URL);
-        } catch (IOException e) {
-            Log.e(TAG, "Error fetching items JSON", e);
+    /**
+     * Returns the process-wide client, backed by a bounded disk cache. The cache stores the
+     * feed's ETag and Last-Modified validators and revalidates with If-None-Match and
+     * If-Modified-Since on subsequent requests.
+     */
+    static synchronized OkHttpClient getClient(Context context) {
+        if (sClient == null) {
+            File cacheDir = new File(context.getApplicationContext().getCacheDir(), HTTP_CACHE_DIR);
+            sClient = new OkHttpClient.Builder()
+                    .cache(new Cache(cacheDir, HTTP_CACHE_SIZE))
+                    .build();
+        }
+        return sClient;
+    }
+
+    /**
+     * Opens the article feed for streaming. The returned reader owns the underlying response
+     * body and must be closed by the caller.
+     *
+     * @param forceNetwork skip the cache and download the full feed
+     * @return the feed, or null if it has not changed since it was last downloaded
+     */
+    public static ArticleStreamReader openArticleStream(Context context, boolean forceNetwork)
+            throws IOException {
+        Response response = fetch(context, Config.BASE_URL, forceNetwork);
+        if (isNotModified(response)) {
+            response.body().close();
             return null;
         }
+        return new ArticleStreamReader(response.body().charStream());
+    }
 
-        // Parse JSON
+    /**
+     * Drops everything from the HTTP cache, so that the next fetch downloads the full feed.
+     */
+    public static void evictCache(Context context) {
         try {
-            JSONTokener tokener = new JSONTokener(itemsJson);
-            Object val = tokener.nextValue();
-            if (!(val instanceof JSONArray)) {
-                throw new JSONException("Expected JSONArray");
-            }
-            return (JSONArray) val;
-        } catch (JSONException e) {
-            Log.e(TAG, "Error parsing items JSON", e);
+            getClient(context).cache().evictAll();
+        } catch (IOException e) {
+            Log.e(TAG, "Error evicting HTTP cache", e);
         }
-
-        return null;
     }
 
-    static String fetchPlainText(URL url) throws IOException {
-        OkHttpClient client = new OkHttpClient();
+    static Response fetch(Context context, URL url, boolean forceNetwork) throws IOException {
+        Request.Builder builder = new Request.Builder()
+                .url(url);
+        if (forceNetwork) {
+            builder.cacheControl(CacheControl.FORCE_NETWORK);
+        }
 
-        Request request = new Request.Builder()
-                .url(url)
-                .build();
+        Response response = getClient(context).newCall(builder.build()).execute();
+        if (!response.isSuccessful()) {
+            response.body().close();
+            throw new IOException("Unexpected response fetching items: " + response.code());
+        }
+        return response;
+    }
 
-        Response response = client.newCall(request).execute();
-        return response.body().string();
+    /**
+     * A response is unchanged if it was served straight from the cache, or if the server
+     * answered our conditional request with a 304.
+     */
+    private static boolean isNotModified(Response response) {
+        Response networkResponse = response.networkResponse();
+        return networkResponse == null
+                || networkResponse.code() == HttpURLConnection.HTTP_NOT_MODIFIED;
     }
 }
@@ -0,0 +1,152 @@
+package com.example.xyzreader.ui;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.util.LruCache;
+import android.text.Html;
+import android.text.Spanned;
+
+import com.example.xyzreader.data.Article;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Turns article bodies into styled paragraphs on a background thread, and keeps the results so
+ * that opening an article again, or swiping back to it, does not parse its HTML a second time.
+ * Paragraphs are split at the blank lines of the body, so they can be shown one list item each.
+ * Rendered bodies are keyed on the article id and a hash of the body, so an article whose body
+ * changed in a sync is rendered afresh.
+ * <p>
+ * All methods must be called on the main thread, and callbacks are made on the main thread.
+ */
+public class ArticleBodyRenderer {
+    // Share of the app's memory class given to rendered bodies
+    private static final int CACHE_FRACTION = 16;
+
+    public interface Callback {
+        void onBodyRendered(Article article, List<Spanned> paragraphs);
+    }
+
+    private static ArticleBodyRenderer sInstance;
+
+    public static ArticleBodyRenderer getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ArticleBodyRenderer(context.getApplicationContext());
+        }
+
+        return sInstance;
+    }
+
+    private final LruCache<String, List<Spanned>> mCache;
+    private final Map<String, List<Callback>> mPending = new HashMap<>();
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private ArticleBodyRenderer(Context applicationContext) {
+        ActivityManager am =
+                (ActivityManager) applicationContext.getSystemService(Context.ACTIVITY_SERVICE);
+        int maxBytes = am.getMemoryClass() * 1024 * 1024 / CACHE_FRACTION;
+        mCache = new LruCache<String, List<Spanned>>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, List<Spanned> value) {
+                // Two bytes per char; the span objects are small next to the text of a long body
+                int length = 0;
+                for (Spanned paragraph : value) {
+                    length += paragraph.length();
+                }
+                return Math.max(1, length * 2);
+            }
+        };
+    }
+
+    /**
+     * Returns the rendered paragraphs if they are already in memory, or null.
+     */
+    public List<Spanned> peek(Article article) {
+        return mCache.get(keyFor(article));
+    }
+
+    /**
+     * Calls back with the rendered paragraphs, right away if they are in memory and otherwise
+     * once they have been rendered on the background thread. The article passed back is the one
+     * the render was started for, which may be another copy of the same article with the same
+     * body.
+     */
+    public void render(final Article article, Callback callback) {
+        final String key = keyFor(article);
+        final List<Spanned> cached = mCache.get(key);
+        if (cached != null) {
+            callback.onBodyRendered(article, cached);
+            return;
+        }
+
+        List<Callback> callbacks = mPending.get(key);
+        if (callbacks != null) {
+            // Already being rendered, for another page or an earlier bind of this one
+            if (!callbacks.contains(callback)) {
+                callbacks.add(callback);
+            }
+            return;
+        }
+        callbacks = new ArrayList<>(1);
+        callbacks.add(callback);
+        mPending.put(key, callbacks);
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<Spanned> paragraphs = splitParagraphs(article.body);
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mCache.put(key, paragraphs);
+                        final List<Callback> callbacks = mPending.remove(key);
+                        if (callbacks != null) {
+                            for (Callback callback : callbacks) {
+                                callback.onBodyRendered(article, paragraphs);
+                            }
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Stops calling back once pending renders finish, for callers that are going away. The
+     * renders themselves still finish and are cached.
+     */
+    public void cancel(Callback callback) {
+        for (List<Callback> callbacks : mPending.values()) {
+            callbacks.remove(callback);
+        }
+    }
+
+    /** Runs on the background thread. */
+    private static List<Spanned> splitParagraphs(String body) {
+        if (body == null) {
+            return Collections.emptyList();
+        }
+        final String[] sources = body.split("\r\n\r\n");
+        final List<Spanned> paragraphs = new ArrayList<>(sources.length);
+        for (String source : sources) {
+            final Spanned paragraph = Html.fromHtml(source);
+            if (paragraph.length() > 0) {
+                paragraphs.add(paragraph);
+            }
+        }
+        return Collections.unmodifiableList(paragraphs);
+    }
+
+    private static String keyFor(Article article) {
+        return article.id + ":" + article.bodyHash;
+    }
+}
@@ -19,10 +19,12 @@ import android.util.TypedValue;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
-import android.widget.TextView;
+import android.widget.Toast;
 
 import com.example.xyzreader.R;
+import com.example.xyzreader.data.ArticleIdsLoader;
 import com.example.xyzreader.data.ArticleLoader;
+import com.example.xyzreader.data.ArticleRepository;
 import com.example.xyzreader.data.ItemsContract;
 
 import java.util.List;
@@ -37,8 +39,16 @@ public class ArticleDetailActivity extends AppCompatActivity
     private static final String TAG = ArticleDetailActivity.class.getSimpleName();
     private static final String STATE_CURRENT_ARTICLE_POSITION = "state_current_article_position";
 
-    private Cursor mCursor;
+    private static final int LOADER_ARTICLE_IDS = 0;
+    private static final int LOADER_START_POSITION = 1;
+
+    // Ids of all articles in pager order; the pager needs nothing else to create its pages
+    private long[] mIds;
+    // Full articles for the pages around the current one, shared by all of the fragments
+    private ArticleRepository mRepository;
     private long mStartId;
+    // Position of mStartId as answered by the provider, or -1 until it has been loaded
+    private int mStartPosition = -1;
 
     private long mSelectedItemId;
 
@@ -95,6 +105,7 @@ public class ArticleDetailActivity extends AppCompatActivity
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        mRepository = new ArticleRepository(this);
 
         /*
         We postpone the enter transition of the activity. This transition isn't actually started
@@ -120,8 +131,6 @@ public class ArticleDetailActivity extends AppCompatActivity
         }
         setContentView(R.layout.activity_article_detail);
 
-        getLoaderManager().initLoader(0, null, this);
-
         mPagerAdapter = new MyPagerAdapter(getFragmentManager());
         mPager = (ViewPager) findViewById(R.id.pager);
         mPager.setAdapter(mPagerAdapter);
@@ -159,10 +168,10 @@ public class ArticleDetailActivity extends AppCompatActivity
              */
             @Override
             public void onPageSelected(int position) {
-                if (mCursor != null) {
-                    mCursor.moveToPosition(position);
+                if (mIds != null && position < mIds.length) {
+                    mSelectedItemId = mIds[position];
                 }
-                mSelectedItemId = mCursor.getLong(ArticleLoader.Query._ID);
+                mRepository.prefetchAround(position);
 
                 /*
                 This is where we actually change the value of mCurrentArticlePosition since this is
@@ -191,9 +200,8 @@ public class ArticleDetailActivity extends AppCompatActivity
                 indicates that the page is scrolled off to the right edge.
                  */
                 ImageView photoView = (ImageView) page.findViewById(R.id.photo);
-                TextView title = (TextView) page.findViewById(R.id.article_title);
-                TextView byline = (TextView) page.findViewById(R.id.article_byline);
-                TextView body = (TextView) page.findViewById(R.id.article_body);
+                // The meta bar and the body paragraphs all live in this list and move with it
+                View bodyList = page.findViewById(R.id.fragment_article_detail_body_list);
                 ImageView logo = (ImageView) page.findViewById(R.id.fragment_article_detail_logo);
                 FloatingActionButton fab = (FloatingActionButton) page.findViewById(R.id.share_fab);
 
@@ -206,9 +214,7 @@ public class ArticleDetailActivity extends AppCompatActivity
                     photoView.setAlpha(1 - Math.abs(position));
                     photoView.setTranslationX((float) (-position * 0.5 * pageWidth));
 
-                    title.setTranslationX(position * pageWidth);
-                    byline.setTranslationX(position * pageWidth);
-                    body.setTranslationX(position * pageWidth);
+                    bodyList.setTranslationX(position * pageWidth);
                     logo.setTranslationX((float) (position * 0.7 * pageWidth));
 
                     // FAB will rotate, pretty neat!
@@ -245,6 +251,20 @@ public class ArticleDetailActivity extends AppCompatActivity
 
         mPager.setCurrentItem(mCurrentArticlePosition);
 
+        getLoaderManager().initLoader(LOADER_ARTICLE_IDS, null, mIdsCallbacks);
+        if (mStartId > 0) {
+            getLoaderManager().initLoader(LOADER_START_POSITION, null, this);
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mRepository.close();
+    }
+
+    ArticleRepository getArticleRepository() {
+        return mRepository;
     }
 
     @Override
@@ -270,36 +290,68 @@ public class ArticleDetailActivity extends AppCompatActivity
         super.finishAfterTransition();
     }
 
+    // Callbacks for the id-only loader that backs the pager
+    private final LoaderManager.LoaderCallbacks<long[]> mIdsCallbacks =
+            new LoaderManager.LoaderCallbacks<long[]>() {
+        @Override
+        public Loader<long[]> onCreateLoader(int id, Bundle bundle) {
+            return new ArticleIdsLoader(ArticleDetailActivity.this);
+        }
+
+        @Override
+        public void onLoadFinished(Loader<long[]> loader, long[] ids) {
+            mIds = ids;
+            mRepository.setIds(ids);
+            mPagerAdapter.notifyDataSetChanged();
+            selectStartPosition();
+            mRepository.prefetchAround(mPager.getCurrentItem());
+        }
+
+        @Override
+        public void onLoaderReset(Loader<long[]> loader) {
+            mIds = null;
+            mRepository.setIds(null);
+            mPagerAdapter.notifyDataSetChanged();
+        }
+    };
+
     @Override
-    public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
-        return ArticleLoader.newAllArticlesInstance(this);
+    public Loader<Cursor> onCreateLoader(int id, Bundle bundle) {
+        return ArticleLoader.newPositionInstance(this, mStartId);
     }
 
     @Override
     public void onLoadFinished(Loader<Cursor> cursorLoader, Cursor cursor) {
-        mCursor = cursor;
-        mPagerAdapter.notifyDataSetChanged();
-
-        // Select the start ID
-        if (mStartId > 0) {
-            mCursor.moveToFirst();
-            // TODO: optimize
-            while (!mCursor.isAfterLast()) {
-                if (mCursor.getLong(ArticleLoader.Query._ID) == mStartId) {
-                    final int position = mCursor.getPosition();
-                    mPager.setCurrentItem(position, false);
-                    break;
-                }
-                mCursor.moveToNext();
+        if (mStartId > 0 && cursor != null) {
+            if (!cursor.moveToFirst()) {
+                // Removed by a sync since the list was shown, so there is no page to open on
+                Toast.makeText(this, R.string.article_not_found, Toast.LENGTH_SHORT).show();
+                mStartId = 0;
+                finish();
+                return;
             }
-            mStartId = 0;
+            mStartPosition = cursor.getInt(ArticleLoader.PositionQuery.POSITION);
+        }
+        selectStartPosition();
+    }
+
+    /*
+    Moves the pager to the article that launched this activity once both the articles and the
+    article's position are known. The position comes from an indexed count in the provider, so
+    the cursor never has to be walked to find it.
+     */
+    private void selectStartPosition() {
+        if (mStartId <= 0 || mIds == null || mStartPosition < 0) {
+            return;
+        }
+        if (mStartPosition < mIds.length) {
+            mPager.setCurrentItem(mStartPosition, false);
         }
+        mStartId = 0;
     }
 
     @Override
     public void onLoaderReset(Loader<Cursor> cursorLoader) {
-        mCursor = null;
-        mPagerAdapter.notifyDataSetChanged();
     }
 
     private class MyPagerAdapter extends FragmentStatePagerAdapter {
@@ -316,7 +368,6 @@ public class ArticleDetailActivity extends AppCompatActivity
 
         @Override
         public Fragment getItem(int position) {
-            mCursor.moveToPosition(position);
             /*
             In this case, we pass both the adapter position as well as mStartingArticlePosition to
             the fragment so that we later on ensure that the shared element transition is done
@@ -324,14 +375,14 @@ public class ArticleDetailActivity extends AppCompatActivity
             we ensure that the shared element transition only occurs for the article that launched
             the details activity.
              */
-            return ArticleDetailFragment.newInstance(mCursor.getLong(ArticleLoader.Query._ID),
+            return ArticleDetailFragment.newInstance(mIds[position],
                     position,
                     mStartingArticlePosition);
         }
 
         @Override
         public int getCount() {
-            return (mCursor != null) ? mCursor.getCount() : 0;
+            return (mIds != null) ? mIds.length : 0;
         }
     }
 }
@@ -1,16 +1,14 @@
 package com.example.xyzreader.ui;
 
 import android.app.Fragment;
-import android.app.LoaderManager;
 import android.content.Intent;
-import android.content.Loader;
-import android.database.Cursor;
 import android.graphics.Bitmap;
 
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.List;
 
 import android.graphics.Rect;
 import android.os.Bundle;
@@ -25,11 +23,15 @@ import android.support.v4.view.ViewCompat;
 import android.support.v7.app.ActionBar;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.graphics.Palette;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.Toolbar;
 import android.text.Html;
+import android.text.Spanned;
+import android.text.SpannedString;
+import android.text.TextUtils;
 import android.text.format.DateUtils;
 import android.text.method.LinkMovementMethod;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -38,10 +40,11 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 
+import com.android.volley.Request;
 import com.android.volley.VolleyError;
-import com.android.volley.toolbox.ImageLoader;
 import com.example.xyzreader.R;
-import com.example.xyzreader.data.ArticleLoader;
+import com.example.xyzreader.data.Article;
+import com.example.xyzreader.data.ArticleRepository;
 
 /**
  * A fragment representing a single Article detail screen. This fragment is
@@ -49,19 +52,35 @@ import com.example.xyzreader.data.ArticleLoader;
  * tablets) or a {@link ArticleDetailActivity} on handsets.
  */
 public class ArticleDetailFragment extends Fragment implements
-        LoaderManager.LoaderCallbacks<Cursor> {
+        ArticleRepository.Listener, ArticleBodyRenderer.Callback {
     private static final String TAG = "ArticleDetailFragment";
 
     public static final String ARG_ITEM_ID = "item_id";
     public static final String ARG_CURRENT_TRANSITION_ID = "current_transition_id";
     public static final String ARG_STARTING_TRANSITION_ID = "starting_transition_id";
 
-    private Cursor mCursor;
+    private static final int DEFAULT_META_BAR_COLOR = 0xFF333333;
+    // Palette scales the photo down to about this many pixels before picking colors
+    private static final int PALETTE_BITMAP_AREA = 112 * 112;
+
+    private Article mArticle;
     private long mItemId;
     private View mRootView;
-    private int mMutedColor = 0xFF333333;
+    private int mMutedColor = DEFAULT_META_BAR_COLOR;
+    // Text color for the meta bar picked from the photo, or 0 to keep the style's color
+    private int mTitleTextColor;
+
+    private BodyAdapter mBodyAdapter;
 
     private ImageView mPhotoView;
+    // Whether the full photo is showing, so that the thumbnail is not put back over it
+    private boolean mPhotoShown;
+    private ScaledImageLoader.ImageContainer mThumbnailContainer;
+    // The bitmap in the photo view and the loader it was retained from
+    private Bitmap mShownBitmap;
+    private ScaledImageLoader mShownBitmapLoader;
+    // The article colors are being picked for, so they are only picked once per article
+    private Article mPaletteArticle;
     private boolean mIsCard = false;
     private Toolbar mToolbar;
     private ImageView mUpButton;
@@ -71,7 +90,6 @@ public class ArticleDetailFragment extends Fragment implements
     // A reference to the starting article position, when the article detail activity was launched
     private int mStartingTransitionID;
 
-    private SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.sss");
     // Use default locale format
     private SimpleDateFormat outputFormat = new SimpleDateFormat();
     // Most time functions can only handle 1902 - 2037
@@ -124,11 +142,40 @@ public class ArticleDetailFragment extends Fragment implements
     public void onActivityCreated(Bundle savedInstanceState) {
         super.onActivityCreated(savedInstanceState);
 
-        // In support library r8, calling initLoader for a fragment in a FragmentPagerAdapter in
-        // the fragment's onCreate may cause the same LoaderManager to be dealt to multiple
-        // fragments because their mIndex is -1 (haven't been added to the activity yet). Thus,
-        // we do this in onActivityCreated.
-        getLoaderManager().initLoader(0, null, this);
+        /*
+        The article comes from the activity's shared repository rather than a loader of our own,
+        so that swiping to a page whose article has already been prefetched binds straight from
+        memory. The listener is called right away in that case.
+         */
+        getActivityCast().getArticleRepository().register(mItemId, this);
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        cancelThumbnailRequest();
+        showPhotoBitmap(null, null);
+        ArticleBodyRenderer.getInstance(getActivity()).cancel(this);
+        getActivityCast().getArticleRepository().unregister(mItemId, this);
+    }
+
+    @Override
+    public void onArticleLoaded(Article article) {
+        mArticle = article;
+        bindViews();
+    }
+
+    @Override
+    public void onBodyRendered(Article article, List<Spanned> paragraphs) {
+        /*
+        The page may have been rebound to another copy of the article in the meantime, which is
+        fine as long as its body is the same one that was rendered.
+         */
+        if (mBodyAdapter == null || mArticle == null || article.id != mArticle.id
+                || article.bodyHash != mArticle.bodyHash) {
+            return;
+        }
+        mBodyAdapter.setParagraphs(paragraphs);
     }
 
     @Override
@@ -137,6 +184,15 @@ public class ArticleDetailFragment extends Fragment implements
         mRootView = inflater.inflate(R.layout.fragment_article_detail, container, false);
 
         mPhotoView = (ImageView) mRootView.findViewById(R.id.photo);
+
+        /*
+        The meta bar and the body paragraphs are items of a RecyclerView, so that a long article
+        only lays out the paragraphs that are on screen.
+         */
+        mBodyAdapter = new BodyAdapter(inflater);
+        RecyclerView bodyList = (RecyclerView) mRootView.findViewById(R.id.fragment_article_detail_body_list);
+        bodyList.setLayoutManager(new LinearLayoutManager(getActivity()));
+        bodyList.setAdapter(mBodyAdapter);
         ViewCompat.setTransitionName(mPhotoView, getString(R.string.transition_name) + mCurrentTransitionID);
 
         mRootView.findViewById(R.id.share_fab).setOnClickListener(new View.OnClickListener() {
@@ -222,17 +278,6 @@ public class ArticleDetailFragment extends Fragment implements
     }
 
 
-    private Date parsePublishedDate() {
-        try {
-            String date = mCursor.getString(ArticleLoader.Query.PUBLISHED_DATE);
-            return dateFormat.parse(date);
-        } catch (ParseException ex) {
-            Log.e(TAG, ex.getMessage());
-            Log.i(TAG, "passing today's date");
-            return new Date();
-        }
-    }
-
     /*
     A method which formats the text for the title of the article, the by line, and the main
     body text.
@@ -242,117 +287,81 @@ public class ArticleDetailFragment extends Fragment implements
             return;
         }
 
-        final TextView titleView = (TextView) mRootView.findViewById(R.id.article_title);
-        final TextView bylineView = (TextView) mRootView.findViewById(R.id.article_byline);
-
-        /*
-         A LinkMovementMethod is applied to the byline so that any links contained within this
-         TextView are handled appropriately. Links are highlighted when they're focused and an
-         Intent is launched when they're clicked.
-        */
-
-        bylineView.setMovementMethod(new LinkMovementMethod());
-        TextView bodyView = (TextView) mRootView.findViewById(R.id.article_body);
-
-        if (mCursor != null) {
+        if (mArticle != null) {
 
             mRootView.setAlpha(0);
             mRootView.setVisibility(View.VISIBLE);
             mRootView.animate().alpha(1);
-            titleView.setText(mCursor.getString(ArticleLoader.Query.TITLE));
-            Date publishedDate = parsePublishedDate();
-            if (!publishedDate.before(START_OF_EPOCH.getTime())) {
+            CharSequence byline;
+            long publishedDate = mArticle.publishedDate;
+            if (publishedDate >= START_OF_EPOCH.getTimeInMillis()) {
 
                 int colorInt = ContextCompat.getColor(getActivity(), R.color.white87Percent);
-                bylineView.setText(Html.fromHtml(
+                byline = Html.fromHtml(
                         DateUtils.getRelativeTimeSpanString(
-                                publishedDate.getTime(),
+                                publishedDate,
                                 System.currentTimeMillis(), DateUtils.HOUR_IN_MILLIS,
                                 DateUtils.FORMAT_ABBREV_ALL).toString()
                                 + " by <font color="+ colorInt + ">"
-                                + mCursor.getString(ArticleLoader.Query.AUTHOR)
-                                + "</font>"));
+                                + mArticle.author
+                                + "</font>");
 
             } else {
                 // If date is before 1902, just show the string
-                bylineView.setText(Html.fromHtml(
-                        outputFormat.format(publishedDate) + " by <font color='#ffffff'>"
-                        + mCursor.getString(ArticleLoader.Query.AUTHOR)
-                                + "</font>"));
+                byline = Html.fromHtml(
+                        outputFormat.format(new Date(publishedDate)) + " by <font color='#ffffff'>"
+                        + mArticle.author
+                                + "</font>");
 
             }
+            /*
+            Colors picked from the photo are stored with the article, so after the first visit
+            the meta bar is bound in its color along with the text.
+             */
+            applyPalette(mArticle);
+            mBodyAdapter.setHeader(mArticle.title, byline);
+
+            /*
+            Parsing the HTML of a long body takes long enough to hold up the first frame and the
+            shared element transition, so it is done in the background and only set from here
+            when it has been rendered before.
+             */
+            ArticleBodyRenderer bodyRenderer = ArticleBodyRenderer.getInstance(getActivity());
+            List<Spanned> paragraphs = bodyRenderer.peek(mArticle);
+            if (paragraphs != null) {
+                mBodyAdapter.setParagraphs(paragraphs);
+            } else {
+                mBodyAdapter.setParagraphs(Collections.<Spanned>emptyList());
+                bodyRenderer.render(mArticle, this);
+            }
 
-            bodyView.setText(Html.fromHtml(
-                    mCursor.getString(ArticleLoader.Query.BODY)
-                        .replaceAll("\r\n\r\n", "<br/><br/>")
-                    )
-            );
-
-            // This is where the image is loaded.
-            ImageLoaderHelper.getInstance(getActivity()).getImageLoader()
-                    .get(mCursor.getString(ArticleLoader.Query.PHOTO_URL), new ImageLoader.ImageListener() {
+            /*
+            This is where the image is loaded. The photo may not have been laid out yet, so it is
+            requested at the largest size it can be shown at: the width of the screen and the
+            height of the expanded app bar.
+             */
+            int photoWidth = getResources().getDisplayMetrics().widthPixels;
+            int photoHeight = getResources().getDimensionPixelSize(R.dimen.app_bar_height_expanded);
+            final ImageLoaderHelper imageLoaderHelper = ImageLoaderHelper.getInstance(getActivity());
+            // The pager also creates the pages either side, whose photos can wait
+            Request.Priority priority = getUserVisibleHint()
+                    ? Request.Priority.HIGH : Request.Priority.LOW;
+            mPhotoShown = false;
+            imageLoaderHelper.getPhotoImageLoader()
+                    .get(mArticle.photoUrl, new ScaledImageLoader.ImageListener() {
                         @Override
-                        public void onResponse(ImageLoader.ImageContainer imageContainer, boolean b) {
+                        public void onResponse(ScaledImageLoader.ImageContainer imageContainer, boolean b) {
                             Bitmap bitmap = imageContainer.getBitmap();
                             if (bitmap != null) {
-                                /*
-                                We generate our Palette asynchronously so that we're not causing
-                                any unnecessary delays on the UI thread. We then use the Palette
-                                to set the background of the meta bar as well as the title and
-                                byline text color.
-                                 */
-                                Palette
-                                        .from(bitmap)
-                                        .maximumColorCount(16)
-                                        .generate(new Palette.PaletteAsyncListener() {
-                                    @Override
-                                    public void onGenerated(Palette palette) {
-
-                                        /*
-                                        We create a Swatch instance so that we can dynamically
-                                        adjust the color the title and byline text.
-                                         */
-                                        Palette.Swatch vibrantSwatch = palette.getVibrantSwatch();
-
-                                        /*
-                                        As long as we have a valid swatch, we adjust the title and
-                                        byline text color.
-                                         */
-                                        if (vibrantSwatch != null) {
-                                            mMutedColor = vibrantSwatch.getRgb();
-                                            titleView.setTextColor(vibrantSwatch.getTitleTextColor());
-                                            bylineView.setTextColor(vibrantSwatch.getTitleTextColor());
-                                        }
-                                        // Otherwise, we'll just adjust the color of the meta bar BG
-                                        else {
-                                            mMutedColor = palette.getVibrantColor(0xFF333333);
-                                        }
-
-                                        // This is where we set the background color of the meta bar
-                                        mRootView.findViewById(R.id.fragment_article_details_meta_bar)
-                                                .setBackgroundColor(mMutedColor);
-                                    }
-                                });
-                                mPhotoView.setImageBitmap(imageContainer.getBitmap());
-
-                                /*
-                                We only want to start the enter transition if these values are the
-                                same. In other words, we only want the transition to occur if the
-                                article that started the detail activity is the same as the one that's
-                                currently being shown. One of the main reason's this precaution was
-                                added is because Alex Lockwood's project was taking the same approach.
-                                 */
-                                if (mCurrentTransitionID == mStartingTransitionID) {
-                                    mPhotoView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
-                                        @Override
-                                        public boolean onPreDraw() {
-                                            mPhotoView.getViewTreeObserver().removeOnPreDrawListener(this);
-                                            // Start the postponed transition
-                                            ActivityCompat.startPostponedEnterTransition(getActivity());
-                                            return true;
-                                        }
-                                    });
+                                mPhotoShown = true;
+                                cancelThumbnailRequest();
+
+                                if (!mArticle.hasPalette) {
+                                    generatePalette(mArticle, bitmap);
                                 }
+                                showPhotoBitmap(bitmap, imageLoaderHelper.getPhotoImageLoader());
+
+                                scheduleStartPostponedEnterTransition();
                             }
                         }
 
@@ -360,44 +369,260 @@ public class ArticleDetailFragment extends Fragment implements
                         public void onErrorResponse(VolleyError volleyError) {
 
                         }
-                    });
+                    }, photoWidth, photoHeight, priority);
+
+            if (!mPhotoShown) {
+                showThumbnail(imageLoaderHelper.getImageLoader(), photoWidth, photoHeight,
+                        priority);
+            }
         } else {
             mRootView.setVisibility(View.GONE);
-            titleView.setText("N/A");
-            bylineView.setText("N/A" );
-            bodyView.setText("N/A");
+            mBodyAdapter.setHeader("N/A", "N/A");
+            mBodyAdapter.setParagraphs(Collections.<Spanned>singletonList(new SpannedString("N/A")));
         }
     }
 
-    @Override
-    public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
-        return ArticleLoader.newInstanceForItemId(getActivity(), mItemId);
+    /*
+    We generate our Palette asynchronously so that we're not causing any unnecessary delays on the
+    UI thread. It is only generated once per article, from a scaled down copy of the photo, and
+    the colors are stored with the article so that later visits don't need to generate it again.
+     */
+    private void generatePalette(final Article article, Bitmap bitmap) {
+        if (mPaletteArticle == article) {
+            return;
+        }
+        mPaletteArticle = article;
+        Palette
+                .from(bitmap)
+                .resizeBitmapArea(PALETTE_BITMAP_AREA)
+                .maximumColorCount(16)
+                .generate(new Palette.PaletteAsyncListener() {
+            @Override
+            public void onGenerated(Palette palette) {
+                if (getActivity() == null) {
+                    return;
+                }
+                Palette.Swatch vibrantSwatch = palette.getVibrantSwatch();
+                Palette.Swatch mutedSwatch = palette.getMutedSwatch();
+                Article updated = getActivityCast().getArticleRepository().savePalette(article,
+                        vibrantSwatch != null ? vibrantSwatch.getRgb() : 0,
+                        vibrantSwatch != null ? vibrantSwatch.getTitleTextColor() : 0,
+                        mutedSwatch != null ? mutedSwatch.getRgb() : 0,
+                        mutedSwatch != null ? mutedSwatch.getTitleTextColor() : 0);
+
+                if (mArticle == article) {
+                    mArticle = updated;
+                    applyPalette(updated);
+                    /*
+                    The meta bar is the first item of the body list, so it picks the colors up
+                    when it is rebound.
+                     */
+                    mBodyAdapter.notifyItemChanged(0);
+                }
+            }
+        });
     }
 
-    @Override
-    public void onLoadFinished(Loader<Cursor> cursorLoader, Cursor cursor) {
-        if (!isAdded()) {
-            if (cursor != null) {
-                cursor.close();
-            }
+    /*
+    The meta bar takes the vibrant color of the photo, and the title and byline take the text
+    color that goes with it. Photos without a vibrant swatch fall back to the muted one, and
+    articles whose colors haven't been picked yet to a dark gray.
+     */
+    private void applyPalette(Article article) {
+        if (article.hasPalette && article.vibrantColor != 0) {
+            mMutedColor = article.vibrantColor;
+            mTitleTextColor = article.vibrantTextColor;
+        } else if (article.hasPalette && article.mutedColor != 0) {
+            mMutedColor = article.mutedColor;
+            mTitleTextColor = article.mutedTextColor;
+        } else {
+            mMutedColor = DEFAULT_META_BAR_COLOR;
+            mTitleTextColor = 0;
+        }
+    }
+
+    /*
+    The list has usually just shown this article's thumbnail, so until the photo has loaded the
+    thumbnail is shown scaled up in its place. The shared element transition and the first frame
+    then have an image even when the photo has to come from the network.
+     */
+    private void showThumbnail(final ScaledImageLoader thumbnailLoader, int width, int height,
+            Request.Priority priority) {
+        cancelThumbnailRequest();
+        if (TextUtils.isEmpty(mArticle.thumbUrl)) {
             return;
         }
 
-        mCursor = cursor;
-        if (mCursor != null && !mCursor.moveToFirst()) {
-            Log.e(TAG, "Error reading item detail cursor");
-            mCursor.close();
-            mCursor = null;
+        Bitmap thumbnail = thumbnailLoader.peekAnySize(mArticle.thumbUrl);
+        if (thumbnail != null) {
+            showPhotoBitmap(thumbnail, thumbnailLoader);
+            scheduleStartPostponedEnterTransition();
+            return;
         }
 
-        bindViews();
+        mThumbnailContainer = thumbnailLoader.get(mArticle.thumbUrl,
+                new ScaledImageLoader.ImageListener() {
+                    @Override
+                    public void onResponse(ScaledImageLoader.ImageContainer imageContainer,
+                            boolean isImmediate) {
+                        Bitmap bitmap = imageContainer.getBitmap();
+                        if (bitmap != null && !mPhotoShown) {
+                            showPhotoBitmap(bitmap, thumbnailLoader);
+                            scheduleStartPostponedEnterTransition();
+                        }
+                    }
 
+                    @Override
+                    public void onErrorResponse(VolleyError volleyError) {
+                    }
+                }, width, height, priority);
     }
 
-    @Override
-    public void onLoaderReset(Loader<Cursor> cursorLoader) {
-        mCursor = null;
-        bindViews();
+    /*
+    Thumbnail bitmaps can be decoded into again once nothing shows them, so the one in the photo
+    view is retained from its loader while it is shown and released when it is replaced.
+     */
+    private void showPhotoBitmap(Bitmap bitmap, ScaledImageLoader loader) {
+        if (bitmap == mShownBitmap) {
+            return;
+        }
+        if (mShownBitmapLoader != null) {
+            mShownBitmapLoader.release(mShownBitmap);
+        }
+        mShownBitmap = bitmap;
+        mShownBitmapLoader = bitmap != null ? loader : null;
+        if (mShownBitmapLoader != null) {
+            mShownBitmapLoader.retain(bitmap);
+        }
+        mPhotoView.setImageBitmap(bitmap);
+    }
+
+    private void cancelThumbnailRequest() {
+        if (mThumbnailContainer != null) {
+            mThumbnailContainer.cancelRequest();
+            mThumbnailContainer = null;
+        }
+    }
+
+    /*
+    We only want to start the enter transition if these values are the same. In other words, we
+    only want the transition to occur if the article that started the detail activity is the same
+    as the one that's currently being shown. One of the main reason's this precaution was added is
+    because Alex Lockwood's project was taking the same approach. Whichever of the thumbnail and
+    the photo is shown first starts it.
+     */
+    private void scheduleStartPostponedEnterTransition() {
+        if (mCurrentTransitionID == mStartingTransitionID) {
+            mPhotoView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+                @Override
+                public boolean onPreDraw() {
+                    mPhotoView.getViewTreeObserver().removeOnPreDrawListener(this);
+                    // Start the postponed transition
+                    ActivityCompat.startPostponedEnterTransition(getActivity());
+                    return true;
+                }
+            });
+        }
+    }
+
+    /*
+    Shows the meta bar as the first item, followed by one item per paragraph of the body.
+     */
+    private class BodyAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+        private static final int VIEW_TYPE_HEADER = 0;
+        private static final int VIEW_TYPE_PARAGRAPH = 1;
+
+        private final LayoutInflater mInflater;
+        private CharSequence mTitle;
+        private CharSequence mByline;
+        private List<Spanned> mParagraphs = Collections.emptyList();
+
+        BodyAdapter(LayoutInflater inflater) {
+            mInflater = inflater;
+        }
+
+        void setHeader(CharSequence title, CharSequence byline) {
+            mTitle = title;
+            mByline = byline;
+            notifyItemChanged(0);
+        }
+
+        void setParagraphs(List<Spanned> paragraphs) {
+            if (mParagraphs == paragraphs) {
+                return;
+            }
+            int oldCount = mParagraphs.size();
+            mParagraphs = paragraphs;
+            if (oldCount > 0) {
+                notifyItemRangeRemoved(1, oldCount);
+            }
+            notifyItemRangeInserted(1, paragraphs.size());
+        }
+
+        @Override
+        public int getItemViewType(int position) {
+            return position == 0 ? VIEW_TYPE_HEADER : VIEW_TYPE_PARAGRAPH;
+        }
+
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            if (viewType == VIEW_TYPE_HEADER) {
+                return new HeaderViewHolder(
+                        mInflater.inflate(R.layout.list_item_article_header, parent, false));
+            }
+            return new ParagraphViewHolder(
+                    mInflater.inflate(R.layout.list_item_article_paragraph, parent, false));
+        }
+
+        @Override
+        public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+            if (holder instanceof HeaderViewHolder) {
+                HeaderViewHolder header = (HeaderViewHolder) holder;
+                header.titleView.setText(mTitle);
+                header.bylineView.setText(mByline);
+                header.metaBar.setBackgroundColor(mMutedColor);
+                if (mTitleTextColor != 0) {
+                    header.titleView.setTextColor(mTitleTextColor);
+                    header.bylineView.setTextColor(mTitleTextColor);
+                }
+            } else {
+                ((ParagraphViewHolder) holder).bodyView.setText(mParagraphs.get(position - 1));
+            }
+        }
+
+        @Override
+        public int getItemCount() {
+            return 1 + mParagraphs.size();
+        }
+    }
+
+    private static class HeaderViewHolder extends RecyclerView.ViewHolder {
+        final View metaBar;
+        final TextView titleView;
+        final TextView bylineView;
+
+        HeaderViewHolder(View view) {
+            super(view);
+            metaBar = view;
+            titleView = (TextView) view.findViewById(R.id.article_title);
+            bylineView = (TextView) view.findViewById(R.id.article_byline);
+
+            /*
+             A LinkMovementMethod is applied to the byline so that any links contained within this
+             TextView are handled appropriately. Links are highlighted when they're focused and an
+             Intent is launched when they're clicked.
+            */
+            bylineView.setMovementMethod(new LinkMovementMethod());
+        }
+    }
+
+    private static class ParagraphViewHolder extends RecyclerView.ViewHolder {
+        final TextView bodyView;
+
+        ParagraphViewHolder(View view) {
+            super(view);
+            bodyView = (TextView) view;
+        }
     }
 
     /*
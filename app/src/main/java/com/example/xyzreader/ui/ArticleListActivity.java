@@ -7,7 +7,6 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.Loader;
-import android.database.Cursor;
 import android.graphics.Color;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
@@ -22,23 +21,17 @@ import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.StaggeredGridLayoutManager;
 import android.support.v7.widget.Toolbar;
-import android.text.Html;
-import android.text.format.DateUtils;
-import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewTreeObserver;
 import android.widget.TextView;
 
 import com.example.xyzreader.R;
-import com.example.xyzreader.data.ArticleLoader;
+import com.example.xyzreader.data.ArticleListItem;
+import com.example.xyzreader.data.ArticleListLoader;
 import com.example.xyzreader.data.ItemsContract;
 import com.example.xyzreader.data.UpdaterService;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.GregorianCalendar;
 import java.util.List;
 import java.util.Map;
 
@@ -49,7 +42,7 @@ import java.util.Map;
  * activity presents a grid of items as cards.
  */
 public class ArticleListActivity extends AppCompatActivity implements
-        LoaderManager.LoaderCallbacks<Cursor> {
+        LoaderManager.LoaderCallbacks<ArticleListLoader.Result> {
 
     private static final String TAG = ArticleListActivity.class.toString();
     public static final String EXTRA_STARTING_ARTICLE_POSITION = "starting_article_position";
@@ -58,14 +51,9 @@ public class ArticleListActivity extends AppCompatActivity implements
     private Toolbar mToolbar;
     private SwipeRefreshLayout mSwipeRefreshLayout;
     private RecyclerView mRecyclerView;
+    private Adapter mAdapter;
     private int mColumnCount;
 
-    private SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.sss");
-    // Use default locale format
-    private SimpleDateFormat outputFormat = new SimpleDateFormat();
-    // Most time functions can only handle 1902 - 2037
-    private GregorianCalendar START_OF_EPOCH = new GregorianCalendar(2,1,1);
-
     private boolean mIsRefreshing = false;
 
     private BroadcastReceiver mRefreshingReceiver = new BroadcastReceiver() {
@@ -100,27 +88,19 @@ public class ArticleListActivity extends AppCompatActivity implements
             previously launched, since mReenterState is only instantiated within onActivityReturn()
              */
             if (mReenterState != null){
-                int startingPosition = mReenterState.getInt(EXTRA_STARTING_ARTICLE_POSITION, 0);
                 int currentPosition = mReenterState.getInt(EXTRA_CURRENT_ARTICLE_POSITION, 0);
-                if (currentPosition != startingPosition) {
-                    /*
-                    If startingPosition != currentPosition the user must have swiped to a
-                    different page in the DetailsActivity. We must update the shared element
-                    so that the correct one falls into place.
-                     */
-                    String newTransitionName = getString(R.string.transition_name) + currentPosition;
-
-                    /*
-                    We obtain the new shared element from the tag that we set on the thumbnail
-                    of the card view. The tag was set within onBindViewHolder().
-                     */
-                    View newSharedElement = mRecyclerView.findViewWithTag(newTransitionName);
-                    if (newSharedElement != null) {
-                        names.clear();
-                        sharedElements.clear();
-                        names.add(newTransitionName);
-                        sharedElements.put(newTransitionName, newSharedElement);
-                    }
+                /*
+                The shared element is always looked up again for the article being returned
+                from. The user may have swiped to a different page in the DetailsActivity, and
+                even if not, a sync may have moved the card the transition started from.
+                 */
+                View newSharedElement = prepareSharedElement(currentPosition);
+                names.clear();
+                sharedElements.clear();
+                if (newSharedElement != null) {
+                    String newTransitionName = newSharedElement.getTransitionName();
+                    names.add(newTransitionName);
+                    sharedElements.put(newTransitionName, newSharedElement);
                 }
                 mReenterState = null;
             }
@@ -196,6 +176,30 @@ public class ArticleListActivity extends AppCompatActivity implements
         StaggeredGridItemDecoration itemDecoration = new StaggeredGridItemDecoration(this, R.dimen.card_view_margin, mColumnCount);
         mRecyclerView.addItemDecoration(itemDecoration);
 
+        /*
+        The adapter and layout manager are created once and fed each new load as a diff against
+        the previous one, so that a sync or another page only touches the items that changed
+        instead of throwing away the views and scroll position.
+         */
+        mAdapter = new Adapter();
+        mAdapter.setHasStableIds(true);
+        mRecyclerView.setAdapter(mAdapter);
+        mRecyclerView.setLayoutManager(
+                new StaggeredGridLayoutManager(mColumnCount, StaggeredGridLayoutManager.VERTICAL));
+
+        /*
+        While a fling settles, the rows it passes are only on screen for a moment, so new
+        thumbnail loads wait until the list comes to rest or is touched again. The rows it stops
+        on then load first instead of queueing behind the ones it flew past.
+         */
+        mRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                ImageLoaderHelper.getInstance(ArticleListActivity.this).setThumbnailLoadsPaused(
+                        newState == RecyclerView.SCROLL_STATE_SETTLING);
+            }
+        });
+
         getLoaderManager().initLoader(0, null, this);
 
         if (savedInstanceState == null) {
@@ -218,6 +222,9 @@ public class ArticleListActivity extends AppCompatActivity implements
     protected void onStop() {
         super.onStop();
         unregisterReceiver(mRefreshingReceiver);
+        // The loader is shared with the detail screen, so it must not be left paused mid-fling
+        ImageLoaderHelper.getInstance(this).setThumbnailLoadsPaused(false);
+        ImageLoaderHelper.getInstance(this).logStats();
     }
 
     private void updateRefreshingUI() {
@@ -225,49 +232,92 @@ public class ArticleListActivity extends AppCompatActivity implements
     }
 
     @Override
-    public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
-        return ArticleLoader.newAllArticlesInstance(this);
+    public Loader<ArticleListLoader.Result> onCreateLoader(int i, Bundle bundle) {
+        return new ArticleListLoader(this);
     }
 
     @Override
-    public void onLoadFinished(Loader<Cursor> cursorLoader, Cursor cursor) {
-        Adapter adapter = new Adapter(cursor);
-        adapter.setHasStableIds(true);
-        mRecyclerView.setAdapter(adapter);
+    public void onLoadFinished(Loader<ArticleListLoader.Result> loader,
+            ArticleListLoader.Result result) {
+        mAdapter.swapResult(result);
+    }
 
-        StaggeredGridLayoutManager staggeredGridLayoutManager =
-                new StaggeredGridLayoutManager(mColumnCount, StaggeredGridLayoutManager.VERTICAL);
+    @Override
+    public void onLoaderReset(Loader<ArticleListLoader.Result> loader) {
+        mAdapter.swapResult(null);
+    }
+
+    /*
+    Returns the thumbnail of the card at this adapter position, with its transition name set from
+    that position, or null if the card is not laid out.
+     */
+    private View prepareSharedElement(int position) {
+        RecyclerView.ViewHolder holder = mRecyclerView.findViewHolderForAdapterPosition(position);
+        if (!(holder instanceof ViewHolder)) {
+            return null;
+        }
+        setSharedElementName((ViewHolder) holder, position);
+        return ((ViewHolder) holder).thumbnailView;
+    }
 
-        mRecyclerView.setLayoutManager(staggeredGridLayoutManager);
+    /*
+    Cards that moved because of an insert or a removal are not rebound, so the transition name and
+    tag set in onBindViewHolder may still be those of the position the card was bound at. They are
+    set again from the card's current position whenever a transition is about to use them.
+     */
+    private void setSharedElementName(ViewHolder holder, int position) {
+        String transitionName = getString(R.string.transition_name) + position;
+        holder.thumbnailView.setTransitionName(transitionName);
+        holder.thumbnailView.setTag(transitionName);
     }
 
-    @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
-        mRecyclerView.setAdapter(null);
+    /*
+    Requests the next page once the user scrolls within half a page of the end of what has been
+    loaded so far. The loader ignores the request while a page is already on its way.
+     */
+    private void loadNextPageIfNeeded(int position) {
+        if (position < mAdapter.getItemCount() - ArticleListLoader.PAGE_SIZE / 2) {
+            return;
+        }
+        Loader<ArticleListLoader.Result> loader = getLoaderManager().getLoader(0);
+        if (loader instanceof ArticleListLoader) {
+            ((ArticleListLoader) loader).loadNextPage();
+        }
     }
 
     private class Adapter extends RecyclerView.Adapter<ViewHolder> {
-        private Cursor mCursor;
+        private final String mTransitionName = getString(R.string.transition_name);
+        private ArticleListLoader.Result mResult;
+
+        public void swapResult(ArticleListLoader.Result result) {
+            if (mResult == result) {
+                return;
+            }
+            final ArticleListLoader.Result previous = mResult;
+            mResult = result;
 
-        public Adapter(Cursor cursor) {
-            mCursor = cursor;
+            if (result == null || !result.dispatchUpdatesFrom(previous, this)) {
+                notifyDataSetChanged();
+            }
         }
 
         @Override
         public long getItemId(int position) {
-            mCursor.moveToPosition(position);
-            return mCursor.getLong(ArticleLoader.Query._ID);
+            return mResult.items.get(position).id;
         }
 
         @Override
         public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
             View view = getLayoutInflater().inflate(R.layout.list_item_article, parent, false);
-            view.setTag(mCursor.getString(ArticleLoader.Query.TITLE));
             final ViewHolder vh = new ViewHolder(view);
             view.setOnClickListener(new View.OnClickListener() {
                 @Override
                 public void onClick(View view) {
                     int adapterPosition = vh.getAdapterPosition();
+                    if (adapterPosition == RecyclerView.NO_POSITION) {
+                        return;
+                    }
+                    setSharedElementName(vh, adapterPosition);
 
                     Intent detailsIntent = new Intent(
                             Intent.ACTION_VIEW,
@@ -294,50 +344,27 @@ public class ArticleListActivity extends AppCompatActivity implements
             return vh;
         }
 
-        private Date parsePublishedDate() {
-            try {
-                String date = mCursor.getString(ArticleLoader.Query.PUBLISHED_DATE);
-                return dateFormat.parse(date);
-            } catch (ParseException ex) {
-                Log.e(TAG, ex.getMessage());
-                Log.i(TAG, "passing today's date");
-                return new Date();
-            }
-        }
-
         @Override
         public void onBindViewHolder(ViewHolder holder, int position) {
-            mCursor.moveToPosition(position);
-            holder.titleView.setText(mCursor.getString(ArticleLoader.Query.TITLE));
-            Date publishedDate = parsePublishedDate();
-            if (!publishedDate.before(START_OF_EPOCH.getTime())) {
-
-                holder.subtitleView.setText(Html.fromHtml(
-                        DateUtils.getRelativeTimeSpanString(
-                                publishedDate.getTime(),
-                                System.currentTimeMillis(), DateUtils.HOUR_IN_MILLIS,
-                                DateUtils.FORMAT_ABBREV_ALL).toString()
-                                + "<br/>" + " by "
-                                + mCursor.getString(ArticleLoader.Query.AUTHOR)));
-            } else {
-                holder.subtitleView.setText(Html.fromHtml(
-                        outputFormat.format(publishedDate)
-                        + "<br/>" + " by "
-                        + mCursor.getString(ArticleLoader.Query.AUTHOR)));
-            }
-            holder.thumbnailView.setImageUrl(
-                    mCursor.getString(ArticleLoader.Query.THUMB_URL),
+            loadNextPageIfNeeded(position);
+            final ArticleListItem item = mResult.items.get(position);
+            holder.titleView.setText(item.title);
+            holder.subtitleView.setText(item.subtitle);
+            /*
+            The aspect ratio stored for the article sizes the thumbnail before its image has
+            loaded, so the card is laid out once at its final height. It is set before the URL
+            so that the image is requested at that height too.
+             */
+            holder.thumbnailView.setAspectRatio(item.aspectRatio);
+            holder.thumbnailView.setImageUrl(item.thumbUrl,
                     ImageLoaderHelper.getInstance(ArticleListActivity.this).getImageLoader());
-            // Keep this in mind. Here is where they set the aspect ratio of the thumbnail
-            // for the list items
-            holder.thumbnailView.setAspectRatio(mCursor.getFloat(ArticleLoader.Query.ASPECT_RATIO));
 
             /*
             Setting the transition name of the image within the ViewHolder. The transition name
             needs to be unique for each ViewHolder since we are using a ViewPager in the
             details activity.
              */
-            String transitionName = getResources().getString(R.string.transition_name) + position;
+            String transitionName = mTransitionName + position;
             holder.thumbnailView.setTransitionName(transitionName);
             /*
             We also set the tag to be the same as the transition name. This tag becomes useful later
@@ -347,9 +374,15 @@ public class ArticleListActivity extends AppCompatActivity implements
 
         }
 
+        @Override
+        public void onViewRecycled(ViewHolder holder) {
+            // The card has scrolled away, so its thumbnail need not be downloaded or decoded
+            holder.thumbnailView.cancelImageLoad();
+        }
+
         @Override
         public int getItemCount() {
-            return mCursor.getCount();
+            return mResult != null ? mResult.getCount() : 0;
         }
     }
 
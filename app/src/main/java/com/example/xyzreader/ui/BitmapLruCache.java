@@ -0,0 +1,68 @@
+package com.example.xyzreader.ui;
+
+import android.graphics.Bitmap;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import com.android.volley.toolbox.ImageLoader;
+
+/**
+ * A memory cache for an {@link ImageLoader} that is bounded by the bytes its bitmaps occupy
+ * rather than by their number, so that a few large photos cannot push the app past its heap
+ * budget and many small thumbnails are not turned away early.
+ */
+public class BitmapLruCache extends LruCache<String, Bitmap> implements ImageLoader.ImageCache {
+    private static final String TAG = BitmapLruCache.class.getSimpleName();
+
+    private final String mName;
+    private final BitmapPool mPool;
+
+    /**
+     * @param name used to tell the caches apart in {@link #logStats()}
+     * @param maxBytes the most bytes of bitmap data to keep
+     */
+    public BitmapLruCache(String name, int maxBytes) {
+        this(name, maxBytes, null);
+    }
+
+    /**
+     * @param name used to tell the caches apart in {@link #logStats()}
+     * @param maxBytes the most bytes of bitmap data to keep
+     * @param pool where evicted bitmaps go, or null to leave them to the garbage collector
+     */
+    public BitmapLruCache(String name, int maxBytes, BitmapPool pool) {
+        super(maxBytes);
+        mName = name;
+        mPool = pool;
+    }
+
+    @Override
+    protected int sizeOf(String key, Bitmap value) {
+        // A bitmap decoded into a pooled one may hold more memory than its pixels need
+        return value.getAllocationByteCount();
+    }
+
+    @Override
+    protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+        if (evicted && mPool != null) {
+            mPool.onEvicted(oldValue);
+        }
+    }
+
+    @Override
+    public Bitmap getBitmap(String url) {
+        return get(url);
+    }
+
+    @Override
+    public void putBitmap(String url, Bitmap bitmap) {
+        put(url, bitmap);
+    }
+
+    /**
+     * Logs the hit and miss counts, and how full the cache is.
+     */
+    public void logStats() {
+        Log.d(TAG, mName + ": " + toString() + ", size=" + size() + "/" + maxSize() + " bytes");
+    }
+}
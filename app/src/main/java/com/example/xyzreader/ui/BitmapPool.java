@@ -0,0 +1,128 @@
+package com.example.xyzreader.ui;
+
+import android.graphics.Bitmap;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bitmaps that are neither cached nor shown any more, kept so that new images can be decoded
+ * into them through {@link android.graphics.BitmapFactory.Options#inBitmap} instead of
+ * allocating fresh memory. The pool is bounded by the bytes its bitmaps occupy and drops the
+ * oldest first.
+ * <p>
+ * Decoding into a bitmap overwrites it, so a bitmap evicted from the memory cache is only pooled
+ * once every view that showed it has let go of it. Views say so through {@link #retain(Bitmap)}
+ * and {@link #release(Bitmap)}, and the cache through {@link #onEvicted(Bitmap)}.
+ * <p>
+ * Bitmaps are taken on the decoding threads and given back on the main thread, so all methods
+ * are synchronized.
+ */
+public class BitmapPool {
+    private final LinkedList<Bitmap> mBitmaps = new LinkedList<>();
+    private final int mMaxBytes;
+    private int mBytes;
+
+    // Number of views showing each bitmap, for bitmaps shown at least once
+    private final Map<Bitmap, Integer> mDisplayCounts = new IdentityHashMap<>();
+    // Bitmaps the cache has dropped that are still shown, pooled once their count drops to 0
+    private final Set<Bitmap> mEvicted = Collections.newSetFromMap(
+            new IdentityHashMap<Bitmap, Boolean>());
+
+    /**
+     * @param maxBytes the most bytes of bitmap data to keep
+     */
+    public BitmapPool(int maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Called when a view starts showing a bitmap that came from the cache this pool belongs to.
+     */
+    public synchronized void retain(Bitmap bitmap) {
+        final Integer count = mDisplayCounts.get(bitmap);
+        mDisplayCounts.put(bitmap, count != null ? count + 1 : 1);
+    }
+
+    /**
+     * Called when a view stops showing a bitmap it passed to {@link #retain(Bitmap)}.
+     */
+    public synchronized void release(Bitmap bitmap) {
+        final Integer count = mDisplayCounts.get(bitmap);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            mDisplayCounts.put(bitmap, count - 1);
+            return;
+        }
+        mDisplayCounts.remove(bitmap);
+        if (mEvicted.remove(bitmap)) {
+            put(bitmap);
+        }
+    }
+
+    /**
+     * Called when the cache drops a bitmap. It is pooled now if no view shows it, or else once
+     * the last view showing it releases it.
+     */
+    public synchronized void onEvicted(Bitmap bitmap) {
+        if (mDisplayCounts.containsKey(bitmap)) {
+            mEvicted.add(bitmap);
+        } else {
+            put(bitmap);
+        }
+    }
+
+    /**
+     * Adds a bitmap that nothing shows or caches any more. Immutable bitmaps cannot be decoded
+     * into and are ignored.
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || !bitmap.isMutable() || bitmap.isRecycled()) {
+            return;
+        }
+        final int size = bitmap.getAllocationByteCount();
+        if (size > mMaxBytes) {
+            return;
+        }
+        mBitmaps.addLast(bitmap);
+        mBytes += size;
+        while (mBytes > mMaxBytes) {
+            mBytes -= mBitmaps.removeFirst().getAllocationByteCount();
+        }
+    }
+
+    /**
+     * Takes a bitmap big enough to decode an image of this size and config into, or returns null
+     * if there is none. The smallest one that fits is chosen, so large bitmaps are kept for large
+     * images.
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        final int needed = width * height * bytesPerPixel(config);
+        Bitmap best = null;
+        for (Bitmap bitmap : mBitmaps) {
+            final int size = bitmap.getAllocationByteCount();
+            if (size >= needed && (best == null || size < best.getAllocationByteCount())) {
+                best = bitmap;
+            }
+        }
+        if (best != null) {
+            mBitmaps.remove(best);
+            mBytes -= best.getAllocationByteCount();
+        }
+        return best;
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        } else if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        }
+        return 4;
+    }
+}
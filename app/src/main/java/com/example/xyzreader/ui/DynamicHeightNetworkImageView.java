@@ -1,11 +1,20 @@
 package com.example.xyzreader.ui;
 
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
+import android.text.TextUtils;
 import android.util.AttributeSet;
+import android.widget.ImageView;
 
-import com.android.volley.toolbox.NetworkImageView;
+import com.android.volley.VolleyError;
 
-public class DynamicHeightNetworkImageView extends NetworkImageView {
+/**
+ * An image view whose height follows the aspect ratio of its image, and which loads its image
+ * through a {@link ScaledImageLoader} at the size it was laid out at. It works like Volley's
+ * NetworkImageView, which always loads through the stock ImageLoader.
+ */
+public class DynamicHeightNetworkImageView extends ImageView {
 
     /*
     mAspectRatio has been slightly adjusted. It was previously set to 1.5f, which corresponds to a
@@ -13,7 +22,17 @@ public class DynamicHeightNetworkImageView extends NetworkImageView {
     The MD specs recommend that a CardView's media content have an aspect ratio of 16:9 and not
     3:2. Therefore, mAspectRatio has been adjusted to follow that recommendation.
      */
-    private float mAspectRatio = 1.78f;
+    private static final float DEFAULT_ASPECT_RATIO = 1.78f;
+    private float mAspectRatio = DEFAULT_ASPECT_RATIO;
+    // Set while an image is being set, whose size never changes the size of the view
+    private boolean mSettingImage;
+
+    private String mUrl;
+    private ScaledImageLoader mImageLoader;
+    private ScaledImageLoader.ImageContainer mImageContainer;
+    // The bitmap being shown and the loader it was retained from, released when it is replaced
+    private Bitmap mShownBitmap;
+    private ScaledImageLoader mShownBitmapLoader;
 
     public DynamicHeightNetworkImageView(Context context) {
         super(context);
@@ -27,15 +46,167 @@ public class DynamicHeightNetworkImageView extends NetworkImageView {
         super(context, attrs, defStyle);
     }
 
+    /**
+     * Sets the width to height ratio the view is sized by. Cards are bound with the ratio stored
+     * for the article, so they take their final height before the image arrives, and a rebind
+     * with the same ratio does not lay the card out again.
+     */
     public void setAspectRatio(float aspectRatio) {
+        if (aspectRatio <= 0) {
+            aspectRatio = DEFAULT_ASPECT_RATIO;
+        }
+        if (aspectRatio == mAspectRatio) {
+            return;
+        }
         mAspectRatio = aspectRatio;
         requestLayout();
     }
 
+    /**
+     * Shows the image at this URL. It is requested once the view has been laid out, so that it
+     * is decoded at the size it is shown at.
+     */
+    public void setImageUrl(String url, ScaledImageLoader imageLoader) {
+        mUrl = url;
+        mImageLoader = imageLoader;
+        loadImageIfNecessary(false);
+    }
+
+    /**
+     * Drops the image and cancels its request if it is still loading, for when the view is
+     * recycled and will be bound to another URL.
+     */
+    public void cancelImageLoad() {
+        mUrl = null;
+        if (mImageContainer != null) {
+            mImageContainer.cancelRequest();
+            mImageContainer = null;
+        }
+        showBitmap(null);
+    }
+
+    /**
+     * Shows a bitmap from the current loader, releasing the one shown before so that it can be
+     * decoded into again once nothing else shows it.
+     */
+    private void showBitmap(Bitmap bitmap) {
+        if (bitmap == mShownBitmap) {
+            return;
+        }
+        if (mShownBitmapLoader != null) {
+            mShownBitmapLoader.release(mShownBitmap);
+        }
+        mShownBitmap = bitmap;
+        mShownBitmapLoader = bitmap != null ? mImageLoader : null;
+        if (mShownBitmapLoader != null) {
+            mShownBitmapLoader.retain(bitmap);
+        }
+        setImageBitmap(bitmap);
+    }
+
+    private void loadImageIfNecessary(final boolean isInLayoutPass) {
+        final int width = getWidth();
+        if (width == 0) {
+            // Not laid out yet
+            return;
+        }
+        // A recycled view still has the height of its last card until its next layout
+        final int height = Math.round(width / mAspectRatio);
+
+        if (TextUtils.isEmpty(mUrl)) {
+            if (mImageContainer != null) {
+                mImageContainer.cancelRequest();
+                mImageContainer = null;
+            }
+            showBitmap(null);
+            return;
+        }
+
+        if (mImageContainer != null && mImageContainer.getRequestUrl() != null) {
+            if (mImageContainer.getRequestUrl().equals(mUrl)) {
+                return;
+            }
+            mImageContainer.cancelRequest();
+            showBitmap(null);
+        }
+
+        mImageContainer = mImageLoader.get(mUrl, new ScaledImageLoader.ImageListener() {
+            @Override
+            public void onResponse(final ScaledImageLoader.ImageContainer response,
+                    boolean isImmediate) {
+                if (isImmediate && isInLayoutPass) {
+                    // Setting the image inside a layout pass would request another one
+                    post(new Runnable() {
+                        @Override
+                        public void run() {
+                            // Unless the view has been bound to another image since
+                            if (mImageContainer == response) {
+                                onResponse(response, false);
+                            }
+                        }
+                    });
+                    return;
+                }
+                showBitmap(response.getBitmap());
+            }
+
+            @Override
+            public void onErrorResponse(VolleyError error) {
+            }
+        }, width, height);
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        super.onLayout(changed, left, top, right, bottom);
+        loadImageIfNecessary(true);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        if (mImageContainer != null) {
+            mImageContainer.cancelRequest();
+            showBitmap(null);
+            mImageContainer = null;
+        }
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    public void setImageDrawable(Drawable drawable) {
+        /*
+        ImageView asks for a layout whenever the new image differs in size from the old one, but
+        the size of this view only follows its width and aspect ratio. Without this, every image
+        that arrives would lay the card, and the staggered grid around it, out again.
+         */
+        mSettingImage = true;
+        super.setImageDrawable(drawable);
+        mSettingImage = false;
+    }
+
+    @Override
+    public void requestLayout() {
+        if (!mSettingImage) {
+            super.requestLayout();
+        }
+    }
+
+    @Override
+    protected void drawableStateChanged() {
+        super.drawableStateChanged();
+        invalidate();
+    }
+
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
-        int measuredWidth = getMeasuredWidth();
+        // The height comes from the width alone, so the image, or the lack of one, plays no part
+        int measuredWidth;
+        if (MeasureSpec.getMode(widthMeasureSpec) != MeasureSpec.UNSPECIFIED) {
+            measuredWidth = MeasureSpec.getSize(widthMeasureSpec);
+        } else {
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+            measuredWidth = getMeasuredWidth();
+        }
         setMeasuredDimension(measuredWidth, (int) (measuredWidth / mAspectRatio));
     }
 }
@@ -1,14 +1,29 @@
 package com.example.xyzreader.ui;
 
+import android.app.ActivityManager;
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.support.v4.util.LruCache;
 
 import com.android.volley.RequestQueue;
-import com.android.volley.toolbox.ImageLoader;
-import com.android.volley.toolbox.Volley;
+import com.android.volley.toolbox.BasicNetwork;
+import com.android.volley.toolbox.DiskBasedCache;
+import com.android.volley.toolbox.HurlStack;
+import com.example.xyzreader.R;
+
+import java.io.File;
 
 public class ImageLoaderHelper {
+    /*
+    Shares of the app's memory class given to each bitmap cache. Thumbnails and hero photos are
+    kept apart so that opening a few articles does not evict the thumbnails of the whole list.
+     */
+    private static final int THUMBNAIL_CACHE_FRACTION = 8;
+    private static final int PHOTO_CACHE_FRACTION = 8;
+    // Share given to evicted thumbnails waiting to be decoded into again
+    private static final int THUMBNAIL_POOL_FRACTION = 32;
+
+    private static final String DISK_CACHE_DIR = "images";
+
     private static ImageLoaderHelper sInstance;
 
     public static ImageLoaderHelper getInstance(Context context) {
@@ -19,26 +34,65 @@ public class ImageLoaderHelper {
         return sInstance;
     }
 
-    private final LruCache<String, Bitmap> mImageCache = new LruCache<String, Bitmap>(20);
-    private ImageLoader mImageLoader;
+    private final BitmapLruCache mThumbnailCache;
+    private final BitmapLruCache mPhotoCache;
+    private final ScaledImageLoader mThumbnailImageLoader;
+    private final ScaledImageLoader mPhotoImageLoader;
 
     private ImageLoaderHelper(Context applicationContext) {
-        RequestQueue queue = Volley.newRequestQueue(applicationContext);
-        ImageLoader.ImageCache imageCache = new ImageLoader.ImageCache() {
-            @Override
-            public void putBitmap(String key, Bitmap value) {
-                mImageCache.put(key, value);
-            }
-
-            @Override
-            public Bitmap getBitmap(String key) {
-                return mImageCache.get(key);
-            }
-        };
-        mImageLoader = new ImageLoader(queue, imageCache);
+        ActivityManager am =
+                (ActivityManager) applicationContext.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryClassBytes = am.getMemoryClass() * 1024 * 1024;
+        BitmapPool thumbnailPool = new BitmapPool(memoryClassBytes / THUMBNAIL_POOL_FRACTION);
+        mThumbnailCache = new BitmapLruCache("thumbnails",
+                memoryClassBytes / THUMBNAIL_CACHE_FRACTION, thumbnailPool);
+        mPhotoCache = new BitmapLruCache("photos", memoryClassBytes / PHOTO_CACHE_FRACTION);
+
+        /*
+        Downloads go through a disk cache of their own, so a cold start can show images without
+        the network. The disk cache holds the scaled copies written by ScaledImageRequest and
+        evicts the least recently used files once it is over its size limit.
+         */
+        File cacheDir = new File(applicationContext.getCacheDir(), DISK_CACHE_DIR);
+        int diskCacheBytes = applicationContext.getResources()
+                .getInteger(R.integer.image_disk_cache_size_mb) * 1024 * 1024;
+        RequestQueue queue = new RequestQueue(new DiskBasedCache(cacheDir, diskCacheBytes),
+                new BasicNetwork(new HurlStack()));
+        queue.start();
+
+        /*
+        Thumbnails are small and opaque, so they are decoded to RGB_565 at half the memory, and
+        decoded into the bitmaps of evicted thumbnails so that scrolling the list does not keep
+        allocating. Photos keep full color depth.
+         */
+        mThumbnailImageLoader = new ScaledImageLoader(queue, mThumbnailCache,
+                Bitmap.Config.RGB_565, thumbnailPool);
+        mPhotoImageLoader = new ScaledImageLoader(queue, mPhotoCache);
+    }
+
+    /**
+     * The loader for the thumbnails of the article list.
+     */
+    public ScaledImageLoader getImageLoader() {
+        return mThumbnailImageLoader;
+    }
+
+    /**
+     * The loader for the hero photos of the detail screen.
+     */
+    public ScaledImageLoader getPhotoImageLoader() {
+        return mPhotoImageLoader;
+    }
+
+    /**
+     * Holds back new thumbnail requests, see {@link ScaledImageLoader#setPaused(boolean)}.
+     */
+    public void setThumbnailLoadsPaused(boolean paused) {
+        mThumbnailImageLoader.setPaused(paused);
     }
 
-    public ImageLoader getImageLoader() {
-        return mImageLoader;
+    public void logStats() {
+        mThumbnailCache.logStats();
+        mPhotoCache.logStats();
     }
 }
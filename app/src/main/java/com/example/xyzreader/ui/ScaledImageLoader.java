@@ -0,0 +1,273 @@
+package com.example.xyzreader.ui;
+
+import android.graphics.Bitmap;
+import android.os.Looper;
+import android.support.v4.util.LruCache;
+
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.ImageLoader;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Loads images through {@link ScaledImageRequest}s, checking a memory cache first. It works like
+ * Volley's ImageLoader, which cannot be given a different request type: requests for the same
+ * image at the same size share one network request, and each caller gets an
+ * {@link ImageContainer} it can cancel.
+ * <p>
+ * Requests can be given a priority, and the loader can be paused so that new requests are held
+ * back, for instance while a list is flung past rows it will not stop on.
+ * <p>
+ * All methods must be called on the main thread, and listeners are called on the main thread.
+ */
+public class ScaledImageLoader {
+    public interface ImageListener {
+        /**
+         * Called with the image, or with a container holding no bitmap right away when the image
+         * has to be fetched, so the view can clear what it was showing. {@code isImmediate} is
+         * true when called from within {@link #get}.
+         */
+        void onResponse(ImageContainer container, boolean isImmediate);
+
+        void onErrorResponse(VolleyError error);
+    }
+
+    private final RequestQueue mRequestQueue;
+    private final ImageLoader.ImageCache mCache;
+    private final Bitmap.Config mDecodeConfig;
+    private final BitmapPool mPool;
+    /**
+     * Number of URLs whose last cache key is remembered. Far more than the memory cache holds
+     * images of, so it only forgets keys whose images are long gone.
+     */
+    private static final int MAX_LAST_CACHE_KEYS = 256;
+
+    private final HashMap<String, BatchedImageRequest> mInFlightRequests = new HashMap<>();
+    // The cache key each URL was last loaded under, for finding it at whatever size it was shown
+    private final LruCache<String, String> mLastCacheKeys = new LruCache<>(MAX_LAST_CACHE_KEYS);
+    // Requests made while paused, added to the queue once resumed unless cancelled by then
+    private final List<Request<?>> mPausedRequests = new ArrayList<>();
+    private boolean mPaused;
+
+    public ScaledImageLoader(RequestQueue queue, ImageLoader.ImageCache imageCache) {
+        this(queue, imageCache, Bitmap.Config.ARGB_8888, null);
+    }
+
+    /**
+     * @param decodeConfig the config images are decoded to
+     * @param pool bitmaps to decode into, or null to always allocate new ones
+     */
+    public ScaledImageLoader(RequestQueue queue, ImageLoader.ImageCache imageCache,
+            Bitmap.Config decodeConfig, BitmapPool pool) {
+        mRequestQueue = queue;
+        mCache = imageCache;
+        mDecodeConfig = decodeConfig;
+        mPool = pool;
+    }
+
+    /**
+     * Returns the image at this URL at the size it was last loaded at if it is still in memory,
+     * or null. For showing an image somewhere it was not loaded for, such as a list thumbnail in
+     * a bigger view while a better image loads.
+     */
+    public Bitmap peekAnySize(String url) {
+        throwIfNotOnMainThread();
+        final String cacheKey = mLastCacheKeys.get(url);
+        if (cacheKey == null) {
+            return null;
+        }
+        final Bitmap bitmap = mCache.getBitmap(cacheKey);
+        if (bitmap == null) {
+            // Evicted from memory since, so the key is of no more use
+            mLastCacheKeys.remove(url);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Must be called when a view starts showing a bitmap from this loader, and matched by
+     * {@link #release(Bitmap)} when it stops. Bitmaps that may be decoded into again are only
+     * reused once no view shows them.
+     */
+    public void retain(Bitmap bitmap) {
+        if (mPool != null && bitmap != null) {
+            mPool.retain(bitmap);
+        }
+    }
+
+    public void release(Bitmap bitmap) {
+        if (mPool != null && bitmap != null) {
+            mPool.release(bitmap);
+        }
+    }
+
+    /**
+     * While paused, images already in memory are still delivered, but requests that have to go
+     * to the disk cache or the network wait until the loader is resumed. Requests cancelled in
+     * the meantime are never sent.
+     */
+    public void setPaused(boolean paused) {
+        throwIfNotOnMainThread();
+        if (mPaused == paused) {
+            return;
+        }
+        mPaused = paused;
+        if (!paused) {
+            for (Request<?> request : mPausedRequests) {
+                if (!request.isCanceled()) {
+                    mRequestQueue.add(request);
+                }
+            }
+            mPausedRequests.clear();
+        }
+    }
+
+    /**
+     * Loads the image at this URL, scaled to cover the target size, at normal priority.
+     *
+     * @param targetWidth the width to fill, or 0 for no limit
+     * @param targetHeight the height to fill, or 0 for no limit
+     */
+    public ImageContainer get(String url, ImageListener listener, int targetWidth,
+            int targetHeight) {
+        return get(url, listener, targetWidth, targetHeight, Request.Priority.NORMAL);
+    }
+
+    /**
+     * Loads the image at this URL, scaled to cover the target size.
+     *
+     * @param targetWidth the width to fill, or 0 for no limit
+     * @param targetHeight the height to fill, or 0 for no limit
+     * @param priority where the request is queued if it has to be made. A request already made
+     *                 for the same image keeps the priority it was made with.
+     */
+    public ImageContainer get(String url, ImageListener listener, int targetWidth,
+            int targetHeight, Request.Priority priority) {
+        throwIfNotOnMainThread();
+        final String cacheKey = ScaledImageRequest.getCacheKey(url, targetWidth, targetHeight);
+
+        Bitmap cachedBitmap = mCache.getBitmap(cacheKey);
+        if (cachedBitmap != null) {
+            mLastCacheKeys.put(url, cacheKey);
+            ImageContainer container = new ImageContainer(cachedBitmap, url, null, null);
+            listener.onResponse(container, true);
+            return container;
+        }
+
+        ImageContainer container = new ImageContainer(null, url, cacheKey, listener);
+        listener.onResponse(container, true);
+
+        BatchedImageRequest request = mInFlightRequests.get(cacheKey);
+        if (request != null) {
+            request.mContainers.add(container);
+            return container;
+        }
+
+        ScaledImageRequest newRequest = new ScaledImageRequest(url, targetWidth, targetHeight,
+                mDecodeConfig, mPool, new Response.Listener<Bitmap>() {
+                    @Override
+                    public void onResponse(Bitmap response) {
+                        onGetImageSuccess(cacheKey, response);
+                    }
+                }, new Response.ErrorListener() {
+                    @Override
+                    public void onErrorResponse(VolleyError error) {
+                        onGetImageError(cacheKey, error);
+                    }
+                });
+        newRequest.setPriority(priority);
+        if (mPaused) {
+            mPausedRequests.add(newRequest);
+        } else {
+            mRequestQueue.add(newRequest);
+        }
+        mInFlightRequests.put(cacheKey, new BatchedImageRequest(newRequest, container));
+        return container;
+    }
+
+    private void onGetImageSuccess(String cacheKey, Bitmap bitmap) {
+        mCache.putBitmap(cacheKey, bitmap);
+
+        BatchedImageRequest request = mInFlightRequests.remove(cacheKey);
+        if (request != null) {
+            mLastCacheKeys.put(request.mRequest.getUrl(), cacheKey);
+            for (ImageContainer container : request.mContainers) {
+                container.mBitmap = bitmap;
+                container.mListener.onResponse(container, false);
+            }
+        }
+    }
+
+    private void onGetImageError(String cacheKey, VolleyError error) {
+        BatchedImageRequest request = mInFlightRequests.remove(cacheKey);
+        if (request != null) {
+            for (ImageContainer container : request.mContainers) {
+                container.mListener.onErrorResponse(error);
+            }
+        }
+    }
+
+    private static void throwIfNotOnMainThread() {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            throw new IllegalStateException("ScaledImageLoader must be invoked from the main thread.");
+        }
+    }
+
+    /**
+     * One caller's interest in an image. Holds the bitmap once it has loaded.
+     */
+    public class ImageContainer {
+        private Bitmap mBitmap;
+        private final ImageListener mListener;
+        // Null once the image has been delivered from memory and there is nothing to cancel
+        private final String mCacheKey;
+        private final String mRequestUrl;
+
+        private ImageContainer(Bitmap bitmap, String requestUrl, String cacheKey,
+                ImageListener listener) {
+            mBitmap = bitmap;
+            mRequestUrl = requestUrl;
+            mCacheKey = cacheKey;
+            mListener = listener;
+        }
+
+        /**
+         * Stops this container's listener from being called. The network request is cancelled
+         * as well once no other container is waiting for it.
+         */
+        public void cancelRequest() {
+            if (mListener == null) {
+                return;
+            }
+            BatchedImageRequest request = mInFlightRequests.get(mCacheKey);
+            if (request != null && request.mContainers.remove(this)
+                    && request.mContainers.isEmpty()) {
+                request.mRequest.cancel();
+                mInFlightRequests.remove(mCacheKey);
+            }
+        }
+
+        public Bitmap getBitmap() {
+            return mBitmap;
+        }
+
+        public String getRequestUrl() {
+            return mRequestUrl;
+        }
+    }
+
+    private static class BatchedImageRequest {
+        private final Request<?> mRequest;
+        private final List<ImageContainer> mContainers = new ArrayList<>(1);
+
+        BatchedImageRequest(Request<?> request, ImageContainer container) {
+            mRequest = request;
+            mContainers.add(container);
+        }
+    }
+}
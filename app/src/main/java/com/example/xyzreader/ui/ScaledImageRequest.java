@@ -0,0 +1,211 @@
+package com.example.xyzreader.ui;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import com.android.volley.Cache;
+import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.VolleyLog;
+import com.android.volley.toolbox.HttpHeaderParser;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A request for an image decoded no larger than it needs to be to fill a target size. Unlike
+ * Volley's ImageRequest, what goes into the disk cache is the downsampled image rather than the
+ * original download, stored under a key that includes the target size. A warm start therefore
+ * reads a small, ready-to-decode file instead of downloading or downsampling the original again.
+ */
+public class ScaledImageRequest extends Request<Bitmap> {
+    private static final int IMAGE_TIMEOUT_MS = 1000;
+    private static final int IMAGE_MAX_RETRIES = 2;
+    private static final float IMAGE_BACKOFF_MULT = 2f;
+
+    /** Marks a cache entry that holds an already downsampled image. */
+    private static final String HEADER_SCALED = "X-XYZReader-Scaled";
+
+    /**
+     * Image URLs are never reused for different content, so the scaled copies are kept until the
+     * disk cache needs the room rather than for as long as the server's cache headers say.
+     */
+    private static final long SCALED_ENTRY_TTL_MS = TimeUnit.DAYS.toMillis(30);
+    private static final int JPEG_QUALITY = 85;
+
+    // Decode one image at a time, as Volley's ImageRequest does, to keep peak memory down
+    private static final Object sDecodeLock = new Object();
+
+    private final Response.Listener<Bitmap> mListener;
+    private final int mTargetWidth;
+    private final int mTargetHeight;
+    private final Bitmap.Config mDecodeConfig;
+    private final BitmapPool mPool;
+    private Priority mPriority = Priority.NORMAL;
+
+    /**
+     * @param targetWidth the width to fill, or 0 for no limit
+     * @param targetHeight the height to fill, or 0 for no limit
+     * @param decodeConfig the config to decode to. The decoder falls back to ARGB_8888 for
+     *                     images with alpha if RGB_565 is asked for.
+     * @param pool bitmaps to decode into, or null to always allocate new ones
+     */
+    public ScaledImageRequest(String url, int targetWidth, int targetHeight,
+            Bitmap.Config decodeConfig, BitmapPool pool, Response.Listener<Bitmap> listener,
+            Response.ErrorListener errorListener) {
+        super(Method.GET, url, errorListener);
+        setRetryPolicy(new DefaultRetryPolicy(IMAGE_TIMEOUT_MS, IMAGE_MAX_RETRIES,
+                IMAGE_BACKOFF_MULT));
+        mListener = listener;
+        mTargetWidth = targetWidth;
+        mTargetHeight = targetHeight;
+        mDecodeConfig = decodeConfig;
+        mPool = pool;
+    }
+
+    /**
+     * The key both the memory and the disk cache use for the image at this URL scaled for this
+     * target size.
+     */
+    public static String getCacheKey(String url, int targetWidth, int targetHeight) {
+        return "#W" + targetWidth + "#H" + targetHeight + url;
+    }
+
+    @Override
+    public String getCacheKey() {
+        return getCacheKey(getUrl(), mTargetWidth, mTargetHeight);
+    }
+
+    /**
+     * Sets where the request is queued relative to others. Must be called before the request
+     * is added to the queue.
+     */
+    public void setPriority(Priority priority) {
+        mPriority = priority;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return mPriority;
+    }
+
+    @Override
+    protected Response<Bitmap> parseNetworkResponse(NetworkResponse response) {
+        synchronized (sDecodeLock) {
+            try {
+                BitmapFactory.Options bounds = new BitmapFactory.Options();
+                bounds.inJustDecodeBounds = true;
+                BitmapFactory.decodeByteArray(response.data, 0, response.data.length, bounds);
+                if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+                    return Response.error(new ParseError(response));
+                }
+
+                if (response.headers != null && response.headers.containsKey(HEADER_SCALED)) {
+                    // Read back from the disk cache: already the right size
+                    Bitmap bitmap = decode(response.data, bounds, 1);
+                    if (bitmap != null) {
+                        return Response.success(bitmap, null);
+                    }
+                }
+                return parseOriginal(response, bounds);
+            } catch (OutOfMemoryError e) {
+                VolleyLog.e("Caught OOM for %d byte image, url=%s", response.data.length, getUrl());
+                return Response.error(new ParseError(e));
+            }
+        }
+    }
+
+    private Response<Bitmap> parseOriginal(NetworkResponse response,
+            BitmapFactory.Options bounds) {
+        final byte[] data = response.data;
+        int sampleSize = findSampleSize(bounds.outWidth, bounds.outHeight);
+        Bitmap bitmap = decode(data, bounds, sampleSize);
+        if (bitmap == null) {
+            return Response.error(new ParseError(response));
+        }
+
+        Cache.Entry entry = HttpHeaderParser.parseCacheHeaders(response);
+        if (entry == null) {
+            entry = new Cache.Entry();
+        }
+        entry.data = sampleSize > 1 ? compress(bitmap) : data;
+        entry.responseHeaders = new HashMap<>(
+                response.headers != null ? response.headers : new HashMap<String, String>());
+        entry.responseHeaders.put(HEADER_SCALED, Integer.toString(sampleSize));
+        final long expires = System.currentTimeMillis() + SCALED_ENTRY_TTL_MS;
+        entry.ttl = Math.max(entry.ttl, expires);
+        entry.softTtl = Math.max(entry.softTtl, expires);
+        return Response.success(bitmap, entry);
+    }
+
+    /**
+     * Returns the largest power of two the image can be divided by and still cover the target
+     * size, so the decoded bitmap is between one and two times the target along its tighter side.
+     */
+    private int findSampleSize(int width, int height) {
+        if (mTargetWidth <= 0 && mTargetHeight <= 0) {
+            return 1;
+        }
+        int sampleSize = 1;
+        while (covers(width / (sampleSize * 2), mTargetWidth)
+                && covers(height / (sampleSize * 2), mTargetHeight)) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static boolean covers(int size, int target) {
+        // An unbounded side only has to stay a pixel wide
+        return size >= Math.max(target, 1);
+    }
+
+    private Bitmap decode(byte[] data, BitmapFactory.Options bounds, int sampleSize) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = mDecodeConfig;
+        if (mPool != null) {
+            // Decoded bitmaps have to be mutable to be decoded into again later
+            options.inMutable = true;
+            options.inBitmap = mPool.get(
+                    (bounds.outWidth + sampleSize - 1) / sampleSize,
+                    (bounds.outHeight + sampleSize - 1) / sampleSize,
+                    mDecodeConfig);
+        }
+        final Bitmap pooled = options.inBitmap;
+        Bitmap bitmap;
+        try {
+            bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        } catch (IllegalArgumentException e) {
+            if (pooled == null) {
+                throw e;
+            }
+            // The pooled bitmap was too small after all, say for an image with alpha
+            options.inBitmap = null;
+            bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        }
+        if (pooled != null && bitmap != pooled) {
+            // Not decoded into, so it can still be used for another image
+            mPool.put(pooled);
+        }
+        return bitmap;
+    }
+
+    private static byte[] compress(Bitmap bitmap) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bitmap.getByteCount() / 8);
+        if (bitmap.hasAlpha()) {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } else {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    protected void deliverResponse(Bitmap response) {
+        mListener.onResponse(response);
+    }
+}
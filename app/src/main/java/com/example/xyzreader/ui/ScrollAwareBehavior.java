@@ -4,7 +4,6 @@ import android.content.Context;
 import android.support.design.widget.CoordinatorLayout;
 import android.support.design.widget.FloatingActionButton;
 import android.support.v4.view.ViewCompat;
-import android.support.v4.widget.NestedScrollView;
 import android.util.AttributeSet;
 import android.view.View;
 
@@ -51,25 +50,14 @@ public class ScrollAwareBehavior extends CoordinatorLayout.Behavior<FloatingActi
         /*
         Both dyConsumed and dyUnconsumed only tell us how much scrolling has occurred and not the
         actual position of scrolling. However, we want to show the FAB again once the user reaches
-        the end of scrolling. Achieving this is not initially possible just by using dyConsumed
-        and/or dyUnconsumed. Therefore, an OnScrollChangeListener is applied in order to both detect
-        the actual scroll position via scrollY as well as when the user has reached the end of
-        scrolling.
+        the end of scrolling. The scrolling view can tell us that directly, whether it is a
+        NestedScrollView or the RecyclerView that holds the article body, so the FAB is shown
+        as soon as the target can no longer scroll down.
          */
-        ((NestedScrollView)target).setOnScrollChangeListener(new NestedScrollView.OnScrollChangeListener() {
-            @Override
-            public void onScrollChange(NestedScrollView v, int scrollX, int scrollY, int oldScrollX, int oldScrollY) {
-
-                /*
-                Not exactly sure why this works. This was taken from the following SO post:
-
-                https://stackoverflow.com/questions/36143802/how-to-detect-the-position-of-the-scroll-nestedscrollview-android-at-the-bottom/37630070#37630070
-                 */
-                if (scrollY == (v.getChildAt(0).getMeasuredHeight() - v.getMeasuredHeight() ) ) {
-                    child.show();
-                }
-            }
-        });
+        if (!ViewCompat.canScrollVertically(target, 1)) {
+            child.show();
+            return;
+        }
 
         /*
         If the user is scrolling down, then we will hide the FAB.